@@ -0,0 +1,63 @@
+package dict;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of lookups mixed with changes, on an open dictionary. Each operation picks a word from the key
+ * distribution; readPercent of the operations look it up, and the rest give it a new definition.
+ * <p>
+ * Only {@link BenchmarkData.Backend#CONCURRENT} may be run with more than one thread (-t).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AccessBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"IN_MEMORY", "BINARY", "LOG_STRUCTURED", "CONCURRENT", "MAPPED", "MAPPED_BLOOM", "CACHED", "COMPACT",
+            "COMPACT_OFF_HEAP", "SHARDED"})
+    BenchmarkData.Backend backend;
+
+    @Param({"uniform", "zipfian"})
+    String distribution;
+
+    @Param({"100", "95", "50"})
+    int readPercent;
+
+    private PersistentDictionary dict;
+    private KeyDistribution keys;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        File file = backend.prepare(size);
+        dict = backend.open(file);
+        keys = KeyDistribution.create(distribution, size);
+    }
+
+    /**
+     * The random numbers of each thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom rnd = new SplittableRandom(Thread.currentThread().getId());
+        String definition = BenchmarkData.definition(rnd);
+    }
+
+    @Benchmark
+    public String access(ThreadState state) {
+        String word = BenchmarkData.word(keys.next(state.rnd));
+        if (readPercent == 100 || state.rnd.nextInt(100) < readPercent) {
+            return dict.get(word);
+        }
+        return dict.put(word, state.definition);
+    }
+}
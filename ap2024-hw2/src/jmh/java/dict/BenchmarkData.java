@@ -0,0 +1,115 @@
+package dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+/**
+ * Test data shared by the benchmarks: dictionary files of a given size, and the dictionary implementations to
+ * compare.
+ * <p>
+ * Word i of a dictionary is {@link #word(long)}; the words are shuffled in the file (as a hand-written dictionary
+ * would be), and every definition is {@link #DEF_LENGTH} characters long. Generating the larger files takes a while,
+ * so they are kept in the temporary directory and reused by later runs.
+ */
+public class BenchmarkData {
+    static final int DEF_LENGTH = 40;
+    static final File DIR = new File(System.getProperty("java.io.tmpdir"), "dict-bench");
+
+    /**
+     * Opens a dictionary implementation on a file.
+     */
+    interface Factory {
+        PersistentDictionary open(File file) throws IOException;
+    }
+
+    /**
+     * The implementations to benchmark.
+     */
+    public enum Backend {
+        IN_MEMORY(InMemoryDictionary::new),
+        BINARY(BinaryDictionary::new),
+        LOG_STRUCTURED(LogStructuredDictionary::new),
+        CONCURRENT(ConcurrentDictionary::new),
+        MAPPED(MappedDictionary::new),
+        MAPPED_BLOOM(file -> new MappedDictionary(file, 0.01)),
+        CACHED(file -> new CachedDictionary(file, 1 << 16)),
+        COMPACT(CompactDictionary::new),
+        COMPACT_OFF_HEAP(file -> new CompactDictionary(file, true)),
+        SHARDED(file -> new ShardedDictionary(file, Runtime.getRuntime().availableProcessors()));
+
+        private final Factory factory;
+
+        Backend(Factory factory) {
+            this.factory = factory;
+        }
+
+        PersistentDictionary open(File file) throws IOException {
+            return factory.open(file);
+        }
+
+        /**
+         * Create a file in this backend's format with the words of the dictionary of the given size
+         * (and delete whatever an earlier run left next to it).
+         */
+        File prepare(int size) throws IOException {
+            File text = textFile(size);
+            File file = new File(DIR, name().toLowerCase() + "-" + size + ".dict");
+            for (File old : DIR.listFiles((dir, name) -> name.startsWith(file.getName()))) {
+                old.delete();
+            }
+            Files.copy(text.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            PersistentDictionary dict = open(file); // converts the text file where the backend has its own format
+            dict.close();
+            return file;
+        }
+    }
+
+    /**
+     * @return the i-th word of the dictionaries.
+     */
+    static String word(long i) {
+        return "word" + Long.toString(i * 0x9e3779b97f4a7c15L >>> 20, 36); // spread over the key space
+    }
+
+    /**
+     * @return a text dictionary (in the {@link InMemoryDictionary} format) with the given number of words.
+     */
+    static synchronized File textFile(int size) throws IOException {
+        File file = new File(DIR, "words-" + size + ".txt");
+        if (file.exists()) {
+            return file;
+        }
+        DIR.mkdirs();
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        SplittableRandom rnd = new SplittableRandom(size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+
+        try (AtomicFileWriter writer = new AtomicFileWriter(file)) {
+            for (int i : order) {
+                writer.writeEntry(word(i), definition(rnd));
+            }
+            writer.commit();
+        }
+        return file;
+    }
+
+    static String definition(SplittableRandom rnd) {
+        char[] chars = new char[DEF_LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + rnd.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
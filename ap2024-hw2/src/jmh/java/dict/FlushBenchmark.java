@@ -0,0 +1,64 @@
+package dict;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@link PersistentDictionary#close()} takes after some of the words were changed. Before each measurement,
+ * a batch gives new definitions to {@code changes} words picked from the key distribution; the measurement is the
+ * close that writes them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FlushBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"IN_MEMORY", "BINARY", "LOG_STRUCTURED", "CONCURRENT", "MAPPED", "MAPPED_BLOOM", "CACHED", "COMPACT",
+            "COMPACT_OFF_HEAP", "SHARDED"})
+    BenchmarkData.Backend backend;
+
+    @Param({"uniform", "zipfian"})
+    String distribution;
+
+    @Param({"1", "1000"})
+    int changes;
+
+    private PersistentDictionary dict;
+    private KeyDistribution keys;
+    private final SplittableRandom rnd = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        File file = backend.prepare(size);
+        dict = backend.open(file);
+        keys = KeyDistribution.create(distribution, size);
+    }
+
+    @Setup(Level.Invocation)
+    public void change() {
+        WriteBatch batch = new WriteBatch();
+        for (int i = 0; i < changes; i++) {
+            batch.put(BenchmarkData.word(keys.next(rnd)), BenchmarkData.definition(rnd));
+        }
+        dict.apply(batch);
+    }
+
+    @Benchmark
+    public void close() throws IOException {
+        dict.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void reopen() throws IOException {
+        dict.open(); // the dictionaries may only be used again after they were opened
+    }
+}
@@ -0,0 +1,86 @@
+package dict;
+
+import java.util.SplittableRandom;
+
+/**
+ * Chooses which words a benchmark looks up: either uniformly, or with a Zipfian distribution (a few words are looked
+ * up most of the time, as in real traffic).
+ * <p>
+ * The Zipfian generator is the one from "Quickly Generating Billion-Record Synthetic Databases" (Gray et al.), as
+ * used by YCSB: after computing the zeta constant once (in time linear in the number of words), each draw takes
+ * constant time. The ranks are then permuted (multiplied by a prime modulo the number of words), so that the hot
+ * words are not neighbours in the dictionary.
+ */
+abstract class KeyDistribution {
+    static final double ZIPF_THETA = 0.99; // the skew used by YCSB
+    static final long SCATTER = 2654435761L; // a prime, so multiplying by it permutes the ranks (for fewer words)
+
+    /**
+     * @return the index of the next word to use, between 0 and the number of words.
+     */
+    abstract long next(SplittableRandom rnd);
+
+    static KeyDistribution create(String name, long items) {
+        switch (name) {
+            case "uniform":
+                return new Uniform(items);
+            case "zipfian":
+                return new Zipfian(items, ZIPF_THETA);
+            default:
+                throw new IllegalArgumentException("Unknown key distribution: " + name);
+        }
+    }
+
+    static class Uniform extends KeyDistribution {
+        private final long items;
+
+        Uniform(long items) {
+            this.items = items;
+        }
+
+        @Override
+        long next(SplittableRandom rnd) {
+            return rnd.nextLong(items);
+        }
+    }
+
+    static class Zipfian extends KeyDistribution {
+        private final long items;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(long items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetaN = zeta(items, theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        @Override
+        long next(SplittableRandom rnd) {
+            double u = rnd.nextDouble();
+            double uz = u * zetaN;
+            long rank;
+            if (uz < 1) {
+                rank = 0;
+            } else if (uz < 1 + Math.pow(0.5, theta)) {
+                rank = 1;
+            } else {
+                rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+            }
+            rank = Math.min(rank, items - 1);
+            return rank * SCATTER % items; // scatter the popular ranks (doesn't overflow for up to 2^31 words)
+        }
+    }
+}
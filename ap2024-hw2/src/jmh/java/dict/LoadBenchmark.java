@@ -0,0 +1,39 @@
+package dict;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it takes to open a dictionary file, from the constructor until the dictionary can be used.
+ * Each measurement opens the file once (the disk cache is warm after the first iteration, so this measures parsing
+ * and building the dictionary rather than the disk).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LoadBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"IN_MEMORY", "BINARY", "LOG_STRUCTURED", "CONCURRENT", "MAPPED", "MAPPED_BLOOM", "CACHED", "COMPACT",
+            "COMPACT_OFF_HEAP", "SHARDED"})
+    BenchmarkData.Backend backend;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        file = backend.prepare(size);
+    }
+
+    @Benchmark
+    public PersistentDictionary open() throws IOException {
+        return backend.open(file);
+    }
+}
@@ -0,0 +1,48 @@
+package dict;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of lookups of words that aren't in the dictionary (where a Bloom filter helps). These don't depend on
+ * the key distribution or the mix of operations, so they are measured apart from {@link AccessBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MissingBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"IN_MEMORY", "BINARY", "LOG_STRUCTURED", "CONCURRENT", "MAPPED", "MAPPED_BLOOM", "CACHED", "COMPACT",
+            "COMPACT_OFF_HEAP", "SHARDED"})
+    BenchmarkData.Backend backend;
+
+    private PersistentDictionary dict;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        File file = backend.prepare(size);
+        dict = backend.open(file);
+    }
+
+    /**
+     * The random numbers of each thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom rnd = new SplittableRandom(Thread.currentThread().getId());
+    }
+
+    @Benchmark
+    public String missing(ThreadState state) {
+        return dict.get("missing" + state.rnd.nextLong(size));
+    }
+}
@@ -0,0 +1,176 @@
+package dict;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces a file atomically: everything is written to a temporary file in the same directory (through a single
+ * large buffer), which is forced to disk and then renamed over the target by {@link #commit()}.
+ * A crash at any point leaves either the old file or the new one, never a partial file.
+ * <p>
+ * The temporary file always has the same name (the target's name with {@link #TEMP_SUFFIX}), so one left behind by
+ * a crash is overwritten by the next writer rather than piling up; writers of the same file must therefore not
+ * overlap (the dictionaries never write their files concurrently). If the writer is closed without committing, the
+ * temporary file is deleted and the target is left untouched.
+ * Strings are written as UTF-8.
+ */
+class AtomicFileWriter implements Closeable {
+    static final int BUFFER_SIZE = 1 << 20;
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    // On the heap: a direct buffer would only be freed by a GC (the channel copies it to a direct buffer anyway)
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long written;
+    private boolean done;
+
+    AtomicFileWriter(File target) throws IOException {
+        this.target = target.getAbsoluteFile().toPath();
+        this.temp = this.target.resolveSibling(this.target.getFileName() + TEMP_SUFFIX);
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    void write(byte b) throws IOException {
+        if (!buf.hasRemaining()) {
+            drain();
+        }
+        buf.put(b);
+    }
+
+    void write(byte[] bytes) throws IOException {
+        write(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Write the remaining bytes of a buffer (the buffer's position is moved to its limit).
+     */
+    void write(ByteBuffer bytes) throws IOException {
+        while (bytes.remaining() > buf.remaining()) {
+            int limit = bytes.limit();
+            bytes.limit(bytes.position() + buf.remaining());
+            buf.put(bytes);
+            bytes.limit(limit);
+            drain();
+        }
+        buf.put(bytes);
+    }
+
+    /**
+     * Write a 32-bit integer, most-significant byte first.
+     */
+    void writeInt(int value) throws IOException {
+        if (buf.remaining() < 4) {
+            drain();
+        }
+        buf.putInt(value);
+    }
+
+    /**
+     * Write a 64-bit integer, most-significant byte first.
+     */
+    void writeLong(long value) throws IOException {
+        if (buf.remaining() < 8) {
+            drain();
+        }
+        buf.putLong(value);
+    }
+
+    void write(String s) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(s);
+        encoder.reset();
+        CoderResult result;
+        while ((result = encoder.encode(chars, buf, true)).isOverflow()) {
+            drain();
+        }
+        if (result.isError()) {
+            result.throwException();
+        }
+        while (encoder.flush(buf).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * Write a line in the {@link InMemoryDictionary} format: <pre>word:def</pre>
+     */
+    void writeEntry(String key, String value) throws IOException {
+        write(key);
+        write((byte) ':');
+        write(value);
+        write((byte) '\n');
+    }
+
+    /**
+     * @return the number of bytes written so far.
+     */
+    long getBytesWritten() {
+        return written + buf.position();
+    }
+
+    /**
+     * Force everything written to disk and atomically replace the target file with it.
+     */
+    void commit() throws IOException {
+        drain();
+        channel.force(true);
+        channel.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        done = true;
+        syncDirectory(target.getParent());
+    }
+
+    /**
+     * Discard the temporary file, unless the writer was committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!done) {
+            done = true;
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            written += channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Force a directory entry (e.g. a rename) to disk. Not all platforms can open directories, so this is only
+     * done where possible.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The rename itself is still atomic, it just may not be durable yet
+        }
+    }
+}
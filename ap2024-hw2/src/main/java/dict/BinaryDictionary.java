@@ -0,0 +1,255 @@
+package dict;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Implements a persistent dictionary that is held entirely in memory (like {@link InMemoryDictionary}), but is
+ * stored in a compact binary file that is smaller on disk and faster to load than the text format.
+ * <p>
+ * The words are stored sorted, in blocks of up to {@link #BLOCK_ENTRIES} entries. Within a block each word is
+ * front-coded: only the number of bytes it shares with the previous word and the rest of its bytes are stored.
+ * The first word of a block is stored in full, so each block can be decoded on its own. Each block is protected by
+ * a CRC-32 checksum, and a corrupt or truncated file fails to load instead of silently losing words.
+ * <pre>
+ * header: magic ("BDIC"), version                                       (32-bit, most-significant byte first)
+ * block:  number of entries, length of the data, data, CRC-32 of the data     (32-bit except the data)
+ * data:   for each entry: sharedLength, suffixLength, suffix, valueLength, value  (lengths are varints, UTF-8)
+ * end:    a block with no entries
+ * </pre>
+ * If the file exists but isn't in this format, it is read as a text file in the {@link InMemoryDictionary} format
+ * and converted when the dictionary is opened.
+ * <p>
+ * Null definitions are not allowed.
+ */
+public class BinaryDictionary extends TreeMap<String, String> implements PersistentDictionary {
+    private static final long serialVersionUID = 1L;
+
+    static final int MAGIC = 0x42444943; // "BDIC"
+    static final int VERSION = 1;
+    static final int BLOCK_ENTRIES = 64;
+
+    private File dictFile;
+
+    public BinaryDictionary(File dictFile) throws IOException {
+        super();
+        this.dictFile = dictFile;
+        open();
+    }
+
+    @Override
+    public void open() throws IOException {
+        clear();
+
+        if (!dictFile.exists() || dictFile.length() == 0) {
+            return;
+        }
+        if (!isBinary(dictFile)) { // an old text dictionary, convert it first
+            convert(dictFile, dictFile);
+        }
+        read(dictFile, this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        write(dictFile, entrySet().iterator());
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (value == null) {
+            throw new NullPointerException("Null definition for " + key);
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return Ranges.of(this, from, to);
+    }
+
+    /**
+     * @return true if the file starts with the magic number of a binary dictionary.
+     */
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < 8) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Convert a text dictionary (in the {@link InMemoryDictionary} format) to a binary dictionary.
+     * The two files may be the same file.
+     *
+     * @param textFile   the text dictionary
+     * @param binaryFile the binary dictionary to write
+     * @throws IOException
+     */
+    public static void convert(File textFile, File binaryFile) throws IOException {
+        TreeMap<String, String> words = new TreeMap<>();
+        DictionaryLoader.load(textFile, words);
+        write(binaryFile, words.entrySet().iterator());
+    }
+
+    /**
+     * Read a binary dictionary file into a map.
+     */
+    static void read(File file, Map<String, String> target) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary dictionary file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary dictionary version " + version + ": " + file);
+            }
+
+            DictionaryLoader.Chunk chunk = new DictionaryLoader.Chunk((int) (file.length() / 32) + 1);
+            CRC32 crc = new CRC32();
+            byte[] data = new byte[0];
+            byte[] key = new byte[64];
+            int blocks = 0;
+            while (true) {
+                int count = in.readInt();
+                int length = in.readInt();
+                if (count < 0 || length < 0 || length > file.length()) {
+                    throw new IOException("Corrupt block " + blocks + " in binary dictionary file: " + file);
+                }
+                if (length > data.length) {
+                    data = new byte[length];
+                }
+                in.readFully(data, 0, length);
+                crc.reset();
+                crc.update(data, 0, length);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("Checksum mismatch in block " + blocks + " of binary dictionary file: "
+                            + file);
+                }
+                if (count == 0) { // the end
+                    break;
+                }
+                key = readBlock(ByteBuffer.wrap(data, 0, length), count, key, chunk);
+                blocks++;
+            }
+            DictionaryLoader.putAll(Collections.singletonList(chunk), target);
+        } catch (EOFException e) {
+            throw new IOException("Truncated binary dictionary file: " + file, e);
+        }
+    }
+
+    /**
+     * Decode the entries of a block.
+     *
+     * @return the buffer used for the words (which may have grown).
+     */
+    private static byte[] readBlock(ByteBuffer data, int count, byte[] key, DictionaryLoader.Chunk chunk)
+            throws IOException {
+        int keyLength = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                int shared = readVarInt(data);
+                int suffix = readVarInt(data);
+                if (shared > keyLength || (i == 0 && shared != 0)) {
+                    throw new IOException("Corrupt block in binary dictionary file");
+                }
+                keyLength = shared + suffix;
+                if (keyLength > key.length) {
+                    byte[] grown = new byte[Math.max(keyLength, key.length * 2)];
+                    System.arraycopy(key, 0, grown, 0, shared);
+                    key = grown;
+                }
+                data.get(key, shared, suffix);
+
+                int valueLength = readVarInt(data);
+                if (valueLength < 0 || valueLength > data.remaining()) {
+                    throw new IOException("Corrupt block in binary dictionary file");
+                }
+                String value = new String(data.array(), data.position(), valueLength, StandardCharsets.UTF_8);
+                data.position(data.position() + valueLength);
+                chunk.add(new String(key, 0, keyLength, StandardCharsets.UTF_8), value);
+            }
+        } catch (RuntimeException e) { // lengths that run past the end of the block
+            throw new IOException("Corrupt block in binary dictionary file", e);
+        }
+        if (data.hasRemaining()) {
+            throw new IOException("Corrupt block in binary dictionary file");
+        }
+        return key;
+    }
+
+    private static int readVarInt(ByteBuffer data) {
+        int value = SlabTable.readVarInt(data, data.position());
+        data.position(data.position() + SlabTable.varIntSize(value));
+        return value;
+    }
+
+    /**
+     * Write sorted entries as a binary dictionary file (atomically replacing the file).
+     */
+    static void write(File file, Iterator<Map.Entry<String, String>> entries) throws IOException {
+        try (AtomicFileWriter out = new AtomicFileWriter(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer data = ByteBuffer.allocate(1 << 16);
+            byte[] previous = new byte[0];
+            int count = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, String> entry = entries.next();
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+
+                int shared = 0;
+                if (count > 0) { // the first word of a block is stored in full
+                    int max = Math.min(key.length, previous.length);
+                    while (shared < max && key[shared] == previous[shared]) {
+                        shared++;
+                    }
+                }
+                int needed = 15 + key.length - shared + value.length;
+                if (data.remaining() < needed) {
+                    ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2, data.position() + needed));
+                    data.flip();
+                    data = grown.put(data);
+                }
+                SlabTable.putVarInt(data, shared);
+                SlabTable.putVarInt(data, key.length - shared);
+                data.put(key, shared, key.length - shared);
+                SlabTable.putVarInt(data, value.length);
+                data.put(value);
+                previous = key;
+
+                if (++count == BLOCK_ENTRIES) {
+                    writeBlock(out, crc, data, count);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                writeBlock(out, crc, data, count);
+            }
+            writeBlock(out, crc, data, 0);
+            out.commit();
+        }
+    }
+
+    private static void writeBlock(AtomicFileWriter out, CRC32 crc, ByteBuffer data, int count) throws IOException {
+        data.flip();
+        crc.reset();
+        crc.update(data.array(), 0, data.limit());
+        out.writeInt(count);
+        out.writeInt(data.limit());
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+        data.clear();
+    }
+}
@@ -0,0 +1,167 @@
+package dict;
+
+import java.io.*;
+
+/**
+ * A Bloom filter over the words of a dictionary file: it answers "definitely not in the file" or "maybe in the file",
+ * so most lookups of missing words don't need to search the file.
+ * <p>
+ * The filter is sized for a given number of words and false-positive rate, and uses double hashing to derive its
+ * hash functions from a single 64-bit hash of the word.
+ * It can be saved next to the dictionary file, together with the size, modification time and number of words of
+ * that file and a CRC-32 of its words, so that a filter that no longer matches the file is not used (even if the file
+ * was rewritten with other words of the same total size, within the resolution of its modification time).
+ * <pre>
+ * magic ("BLOM"), version, dataLength (64-bit), dataModified (64-bit), dataCount, dataChecksum,
+ * falsePositiveRate (64-bit), numHashes, numWords, words (64-bit each)     (most-significant byte first)
+ * </pre>
+ */
+class BloomFilter {
+    static final int MAGIC = 0x424c4f4d; // "BLOM"
+    static final int VERSION = 2;
+
+    private final double falsePositiveRate;
+    private final int numHashes;
+    private final long[] bits;
+    private final long numBits;
+
+    /**
+     * @param expectedWords     the number of words that will be added
+     * @param falsePositiveRate the rate of false positives when that many words were added
+     */
+    BloomFilter(int expectedWords, double falsePositiveRate) {
+        this(falsePositiveRate, numHashes(expectedWords, falsePositiveRate),
+                new long[(int) Math.min((numBits(expectedWords, falsePositiveRate) + 63) / 64, Integer.MAX_VALUE - 8)]);
+    }
+
+    private BloomFilter(double falsePositiveRate, int numHashes, long[] bits) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.numHashes = numHashes;
+        this.bits = bits;
+        this.numBits = 64L * bits.length;
+    }
+
+    /**
+     * @return the optimal number of bits: -n ln(p) / ln(2)^2 (at least 64).
+     */
+    private static long numBits(int expectedWords, double falsePositiveRate) {
+        return Math.max(64, (long) Math.ceil(-Math.max(expectedWords, 1) * Math.log(falsePositiveRate)
+                / (Math.log(2) * Math.log(2))));
+    }
+
+    /**
+     * @return the optimal number of hash functions: ln(2) m / n.
+     */
+    private static int numHashes(int expectedWords, double falsePositiveRate) {
+        double bitsPerWord = (double) numBits(expectedWords, falsePositiveRate) / Math.max(expectedWords, 1);
+        return Math.max(1, (int) Math.round(bitsPerWord * Math.log(2)));
+    }
+
+    double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    void add(String word) {
+        long hash = hash(word);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < numHashes; i++, hash += step) {
+            long bit = Long.remainderUnsigned(hash, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false if the word was definitely not added, true if it may have been.
+     */
+    boolean mightContain(String word) {
+        long hash = hash(word);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < numHashes; i++, hash += step) {
+            long bit = Long.remainderUnsigned(hash, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(String word) {
+        long hash = word.length();
+        for (int i = 0; i < word.length(); i++) {
+            hash = hash * 0x100000001b3L + word.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads every input bit over the whole hash.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Save the filter for a dictionary file (atomically replacing the filter file).
+     *
+     * @param file     the filter file
+     * @param dataFile the dictionary file the filter was built from
+     * @param count    the number of words in the dictionary file
+     * @param checksum the CRC-32 of the words of the dictionary file
+     */
+    void write(File file, File dataFile, int count, int checksum) throws IOException {
+        try (AtomicFileWriter out = new AtomicFileWriter(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(dataFile.length());
+            out.writeLong(dataFile.lastModified());
+            out.writeInt(count);
+            out.writeInt(checksum);
+            out.writeLong(Double.doubleToLongBits(falsePositiveRate));
+            out.writeInt(numHashes);
+            out.writeInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+            out.commit();
+        }
+    }
+
+    /**
+     * Load the filter of a dictionary file.
+     *
+     * @param file     the filter file
+     * @param dataFile the dictionary file
+     * @param count    the number of words in the dictionary file
+     * @param checksum the CRC-32 of the words of the dictionary file
+     * @return the filter, or null if there is no filter or it doesn't match the dictionary file (or is corrupt).
+     */
+    static BloomFilter read(File file, File dataFile, int count, int checksum) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != dataFile.length()
+                    || in.readLong() != dataFile.lastModified() || in.readInt() != count || in.readInt() != checksum) {
+                return null;
+            }
+            double falsePositiveRate = Double.longBitsToDouble(in.readLong());
+            int numHashes = in.readInt();
+            int length = in.readInt();
+            if (numHashes <= 0 || length <= 0 || 8L * length + 48 != file.length()) {
+                return null;
+            }
+            long[] bits = new long[length];
+            for (int i = 0; i < length; i++) {
+                bits[i] = in.readLong();
+            }
+            return new BloomFilter(falsePositiveRate, numHashes, bits);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
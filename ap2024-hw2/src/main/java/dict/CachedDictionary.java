@@ -0,0 +1,167 @@
+package dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A persistent dictionary that keeps only a bounded set of recently used words in memory, and reads everything
+ * else from a disk-backed dictionary (by default a {@link MappedDictionary}, which looks words up through the
+ * index in its file).
+ * <p>
+ * The cache holds at most a fixed number of words and evicts the least recently used one when it is full.
+ * It counts hits, misses and evictions, to help choose its capacity.
+ * Changes are passed on to the underlying dictionary, which keeps them until they are flushed.
+ */
+public class CachedDictionary implements PersistentDictionary {
+    private final PersistentDictionary store;
+    private final int capacity;
+    private final LinkedHashMap<String, String> cache;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Cache a {@link MappedDictionary} stored in dictFile.
+     *
+     * @param dictFile the dictionary file
+     * @param capacity the maximum number of words to cache
+     */
+    public CachedDictionary(File dictFile, int capacity) throws IOException {
+        this(new MappedDictionary(dictFile), capacity);
+    }
+
+    /**
+     * Cache an (open) dictionary.
+     *
+     * @param store    the dictionary to read words from
+     * @param capacity the maximum number of words to cache
+     */
+    public CachedDictionary(PersistentDictionary store, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.store = store;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) { // in order of access
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() > CachedDictionary.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void open() throws IOException {
+        cache.clear();
+        store.open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = cache.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+        misses++;
+        value = store.get(key);
+        if (value != null) {
+            cache.put((String) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String old = store.put(key, value);
+        cache.put(key, value);
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public String remove(Object key) {
+        cache.remove(key);
+        return store.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        store.clear();
+    }
+
+    @Override
+    public void apply(WriteBatch batch) {
+        store.apply(batch);
+        for (Map.Entry<String, String> change : batch.changes().entrySet()) {
+            if (change.getValue() == null) {
+                cache.remove(change.getKey());
+            } else {
+                cache.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Range queries are read from the underlying dictionary, and don't go through the cache.
+     */
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return store.range(from, to);
+    }
+
+    /**
+     * @return the maximum number of words in the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of lookups that were answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to go to the underlying dictionary.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of words that were evicted from the cache to make room for others.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+}
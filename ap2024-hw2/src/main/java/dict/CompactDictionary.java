@@ -0,0 +1,183 @@
+package dict;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Implements a persistent dictionary that is held entirely in memory, like {@link InMemoryDictionary}, but stores
+ * the words and definitions as UTF-8 bytes packed into large slabs (see {@link SlabTable}) instead of a tree of
+ * objects. This uses a fraction of the memory for large dictionaries, and leaves almost nothing for the garbage
+ * collector to scan.
+ * <p>
+ * The file format is the same as {@link InMemoryDictionary}. Changes are kept in a small overlay, which is merged
+ * into new slabs whenever it grows too large, and when the dictionary is flushed.
+ * Null definitions are not allowed.
+ */
+public class CompactDictionary extends OverlayDictionary {
+    static final int MIN_MERGE_SIZE = 4096; // the overlay is merged once it has more entries than this...
+    static final int MERGE_RATIO = 8; // ...and more than 1/MERGE_RATIO of the entries in the slabs
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File dictFile;
+    private final boolean offHeap;
+
+    public CompactDictionary(File dictFile) throws IOException {
+        this(dictFile, false);
+    }
+
+    /**
+     * @param dictFile the dictionary file
+     * @param offHeap  if true, the slabs are allocated outside the Java heap (as direct buffers).
+     */
+    public CompactDictionary(File dictFile, boolean offHeap) throws IOException {
+        this.dictFile = dictFile;
+        this.offHeap = offHeap;
+        open();
+    }
+
+    @Override
+    SortedTable load() throws IOException {
+        SlabTable.Builder builder = new SlabTable.Builder(offHeap);
+        if (!dictFile.exists()) {
+            return builder.build();
+        }
+
+        try (InputStream in = new FileInputStream(dictFile)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int lineStart = 0; // start of the first line we haven't added yet
+            int end = 0; // end of the data in buf
+            int read;
+
+            while ((read = in.read(buf, end, buf.length - end)) != -1) {
+                int scan = end;
+                end += read;
+
+                for (int i = scan; i < end; i++) { // add all the complete lines
+                    if (buf[i] == '\n' || buf[i] == '\r') {
+                        addLine(builder, buf, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+
+                // Move the incomplete line to the start of the buffer (growing it if the line doesn't fit)
+                int remaining = end - lineStart;
+                if (remaining == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                } else {
+                    System.arraycopy(buf, lineStart, buf, 0, remaining);
+                }
+                lineStart = 0;
+                end = remaining;
+            }
+            addLine(builder, buf, 0, end); // the last line may not end with a newline
+        }
+        return builder.build();
+    }
+
+    /**
+     * Add a <pre>word:def</pre> line to the table (lines without a ':' are ignored).
+     */
+    private static void addLine(SlabTable.Builder builder, byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == ':') {
+                builder.add(buf, from, i - from, buf, i + 1, to - i - 1);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String old = super.put(key, value);
+        maybeMerge();
+        return old;
+    }
+
+    @Override
+    public String remove(Object key) {
+        String old = super.remove(key);
+        maybeMerge();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        base = new SlabTable.Builder(offHeap).build();
+    }
+
+    /**
+     * Merge the overlay into the slabs, if it grew too large.
+     */
+    private void maybeMerge() {
+        if (overlay.size() > MIN_MERGE_SIZE && overlay.size() > base.size() / MERGE_RATIO) {
+            replaceBase(merge());
+        }
+    }
+
+    /**
+     * @return a new table with the contents of the current table and the overlay. Entries that didn't change
+     * are copied as bytes.
+     */
+    private SlabTable merge() {
+        SlabTable.Builder builder = new SlabTable.Builder(offHeap);
+        Iterator<Map.Entry<String, String>> changes = overlay.entrySet().iterator();
+        Map.Entry<String, String> change = changes.hasNext() ? changes.next() : null;
+        int index = 0;
+
+        while (index < base.size() || change != null) {
+            int cmp = index >= base.size() ? 1 : change == null ? -1 : base.compareKeyAt(index, change.getKey());
+
+            if (cmp < 0) { // the word in the table didn't change
+                builder.add((SlabTable) base, index++);
+                continue;
+            }
+            if (cmp == 0) { // the change replaces the word in the table
+                index++;
+            }
+            if (!isRemoved(change.getValue())) {
+                byte[] key = change.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = change.getValue().getBytes(StandardCharsets.UTF_8);
+                builder.add(key, 0, key.length, value, 0, value.length);
+            }
+            change = changes.hasNext() ? changes.next() : null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Merge the overlay and write all the entries straight from the slabs (atomically replacing the file).
+     */
+    @Override
+    void write() throws IOException {
+        if (!overlay.isEmpty()) {
+            replaceBase(merge());
+        }
+        SlabTable table = (SlabTable) base;
+
+        try (AtomicFileWriter out = new AtomicFileWriter(dictFile)) {
+            for (int i = 0; i < table.size(); i++) {
+                ByteBuffer slab = table.slab(i).duplicate();
+                int offset = table.offset(i);
+                int keyLength = SlabTable.readVarInt(slab, offset);
+                int keyOffset = offset + SlabTable.varIntSize(keyLength);
+                int valueOffset = keyOffset + keyLength;
+                int valueLength = SlabTable.readVarInt(slab, valueOffset);
+                valueOffset += SlabTable.varIntSize(valueLength);
+
+                slab.limit(keyOffset + keyLength).position(keyOffset);
+                out.write(slab);
+                out.write((byte) ':');
+                slab.limit(valueOffset + valueLength).position(valueOffset);
+                out.write(slab);
+                out.write((byte) '\n');
+            }
+            out.commit();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package dict;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implements a persistent dictionary that is held entirely in memory (in the same file format as
+ * {@link InMemoryDictionary}) and can be used by many threads at once.
+ * <p>
+ * The words are kept in a {@link ConcurrentSkipListMap}, so {@link #get(Object)}, {@link #containsKey(Object)} and
+ * {@link #size()} never lock. Writers lock one of several stripes (chosen by the hash of the word), so writers of
+ * different words rarely wait for each other. Operations that need the whole dictionary to stand still
+ * ({@link #close()}, {@link #open()} and {@link #clear()}) lock all the stripes. {@link #close()} only holds them
+ * while copying the entries to a snapshot, and writes the snapshot to disk after releasing them; readers are
+ * never paused. Concurrent calls to {@link #close()} write their snapshots one at a time, in the order they were
+ * taken.
+ * <p>
+ * In group-commit mode, threads that call {@link #close()} at about the same time share a single write (and a
+ * single fsync) of the file, instead of each writing it in turn.
+ * <p>
+ * Null definitions are not allowed.
+ */
+public class ConcurrentDictionary implements PersistentDictionary {
+    private final File dictFile;
+    private final ReentrantLock[] stripes; // writers lock one stripe, snapshots lock them all
+
+    private volatile ConcurrentSkipListMap<String, String> map = new ConcurrentSkipListMap<>();
+    private final LongAdder size = new LongAdder(); // ConcurrentSkipListMap.size() has to count the entries
+    private final GroupCommit groupCommit; // null if every close() writes on its own
+    // Held from taking a snapshot to replacing the file, so an older snapshot never replaces a newer one
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public ConcurrentDictionary(File dictFile) throws IOException {
+        this(dictFile, false);
+    }
+
+    /**
+     * @param dictFile    the dictionary file
+     * @param groupCommit if true, concurrent calls to {@link #close()} are batched into one write of the file
+     */
+    public ConcurrentDictionary(File dictFile, boolean groupCommit) throws IOException {
+        this.dictFile = dictFile;
+        this.groupCommit = groupCommit ? new GroupCommit(this::flush) : null;
+        this.stripes = new ReentrantLock[Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors()) * 2];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        open();
+    }
+
+    private int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    @Override
+    public void open() throws IOException {
+        ConcurrentSkipListMap<String, String> loaded = new ConcurrentSkipListMap<>();
+        DictionaryLoader.load(dictFile, loaded);
+
+        lockAll();
+        try {
+            map = loaded;
+            size.reset();
+            size.add(loaded.size());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (groupCommit != null) {
+            groupCommit.commit();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Write a snapshot of the dictionary to the file (one flush at a time).
+     */
+    private void flush() throws IOException {
+        flushLock.lock();
+        try {
+            writeSnapshot();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        String[] keys;
+        String[] values;
+
+        lockAll();
+        try { // a consistent snapshot: no writer is in the middle of a change
+            int count = size.intValue();
+            keys = new String[count];
+            values = new String[count];
+            int i = 0;
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i] = entry.getValue();
+                i++;
+            }
+        } finally {
+            unlockAll();
+        }
+
+        try (AtomicFileWriter writer = new AtomicFileWriter(dictFile)) {
+            for (int i = 0; i < keys.length; i++) {
+                writer.writeEntry(keys[i], values[i]);
+            }
+            writer.commit();
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        ReentrantLock stripe = stripes[stripe(key)];
+        stripe.lock();
+        try {
+            String old = map.put(key, value);
+            if (old == null) {
+                size.increment();
+            }
+            return old;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public String remove(Object key) {
+        ReentrantLock stripe = stripes[stripe(key)];
+        stripe.lock();
+        try {
+            String old = map.remove(key);
+            if (old != null) {
+                size.decrement();
+            }
+            return old;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            map = new ConcurrentSkipListMap<>(); // readers see either the old map or the new (empty) one
+            size.reset();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stripes of all the words in the batch are locked while it is applied, so a snapshot taken by
+     * {@link #close()} has all of the batch or none of it. Readers may see part of the batch while it is applied.
+     */
+    @Override
+    public void apply(WriteBatch batch) {
+        boolean[] locked = new boolean[stripes.length];
+        for (String key : batch.changes().keySet()) {
+            locked[stripe(key)] = true;
+        }
+        for (int i = 0; i < stripes.length; i++) { // always in the same order, so batches don't deadlock
+            if (locked[i]) {
+                stripes[i].lock();
+            }
+        }
+        try {
+            for (Map.Entry<String, String> change : batch.changes().entrySet()) {
+                if (change.getValue() == null) {
+                    if (map.remove(change.getKey()) != null) {
+                        size.decrement();
+                    }
+                } else if (map.put(change.getKey(), change.getValue()) == null) {
+                    size.increment();
+                }
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                if (locked[i]) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The iterator is weakly consistent: it may be used while the dictionary is changed, and reflects some, all or
+     * none of the changes made since it was created.
+     */
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return Ranges.of(map, from, to);
+    }
+}
@@ -0,0 +1,13 @@
+package dict;
+
+/**
+ * Notified of every operation on an {@link InstrumentedDictionary} (while its instrumentation is enabled).
+ * Listeners are called on the thread that made the operation, right after it, so they should be quick.
+ */
+public interface DictionaryListener {
+    /**
+     * @param operation the operation
+     * @param nanos     how long it took, in nanoseconds
+     */
+    void operationCompleted(DictionaryMetrics.Operation operation, long nanos);
+}
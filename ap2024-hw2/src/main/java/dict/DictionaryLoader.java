@@ -0,0 +1,482 @@
+package dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads dictionary files in the {@link InMemoryDictionary} format (one <pre>word:def</pre> per line) in parallel.
+ * <p>
+ * The file is split into chunks of roughly equal size, each ending at a line break, and the chunks are parsed
+ * on the common fork-join pool. The results are then put into the target map in the order they appear in
+ * the file, so a word that appears more than once gets its last definition (as if the lines were read one by one).
+ * If the words in the file are sorted (as they are in files written by the dictionaries) and the target is an
+ * empty {@link TreeMap}, the map is built in linear time.
+ */
+public class DictionaryLoader {
+    static final int CHUNK_SIZE = 8 << 20;
+
+    /**
+     * Read a dictionary file into a map. If the file doesn't exist, the map isn't changed.
+     *
+     * @param file   the dictionary file
+     * @param target the map to put the words into
+     * @throws IOException
+     */
+    public static void load(File file, Map<String, String> target) throws IOException {
+        load(file, target, CHUNK_SIZE, null);
+    }
+
+    /**
+     * Read a dictionary file into a map, sharing the definitions through a pool: equal definitions (in the file, or
+     * already in the pool) are stored once. The words aren't pooled, since each appears once in a dictionary.
+     *
+     * @param file   the dictionary file
+     * @param target the map to put the words into
+     * @param pool   the pool of strings to use
+     * @throws IOException
+     */
+    public static void load(File file, Map<String, String> target, StringPool pool) throws IOException {
+        load(file, target, CHUNK_SIZE, pool);
+    }
+
+    static void load(File file, Map<String, String> target, int chunkSize) throws IOException {
+        load(file, target, chunkSize, null);
+    }
+
+    private static void load(File file, Map<String, String> target, int chunkSize, StringPool pool)
+            throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            putAll(parse(channel, 0, channel.size(), chunkSize, pool), target);
+        }
+    }
+
+    /**
+     * Read the lines that were appended to a dictionary file after offset into a map. Only complete lines (ending
+     * with a line break) are read, so a line that is still being written is left for the next call.
+     *
+     * @param file   the dictionary file
+     * @param target the map to put the words into
+     * @param offset the offset to read from (the end of a line)
+     * @return the offset right after the last line that was read.
+     * @throws IOException
+     */
+    static long loadAppended(File file, Map<String, String> target, long offset) throws IOException {
+        return loadAppended(file, target, offset, false);
+    }
+
+    /**
+     * Like {@link #loadAppended(File, Map, long)}, but if toEnd is true, a last line without a line break after it
+     * is read too (as the whole file is read by {@link #load}). The returned offset is still right after the last
+     * line break, so that a line that was still being written is read again once it is complete.
+     */
+    static long loadAppended(File file, Map<String, String> target, long offset, boolean toEnd)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = lastLine(channel, offset, size);
+            putAll(parse(channel, offset, toEnd ? size : end, CHUNK_SIZE, null), target);
+            return end;
+        }
+    }
+
+    /**
+     * Parse a range of the file (that starts and ends at line breaks) in parallel.
+     */
+    private static List<Chunk> parse(FileChannel channel, long start, long end, int chunkSize, StringPool pool)
+            throws IOException {
+        long[] bounds = split(channel, start, end, chunkSize);
+        try {
+            return new ParseTask(channel, bounds, 0, bounds.length - 1, pool).invoke();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Put parsed entries into a map, in order (so a word that appears more than once gets its last definition).
+     * If the words are sorted and the target is an empty {@link TreeMap}, the map is built in linear time.
+     */
+    static void putAll(List<Chunk> chunks, Map<String, String> target) {
+        if (isSorted(chunks) && target instanceof TreeMap && target.isEmpty()
+                && ((TreeMap<String, String>) target).comparator() == null) {
+            target.putAll(new SortedChunks(chunks)); // TreeMap builds itself from a sorted map in linear time
+        } else {
+            for (Chunk chunk : chunks) {
+                for (int i = 0; i < chunk.size; i++) {
+                    target.put(chunk.keys[i], chunk.values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the keys in all the chunks (in order) are strictly increasing.
+     */
+    private static boolean isSorted(List<Chunk> chunks) {
+        String last = null;
+        for (Chunk chunk : chunks) {
+            if (chunk.size == 0) {
+                continue;
+            }
+            if (!chunk.sorted || (last != null && last.compareTo(chunk.keys[0]) >= 0)) {
+                return false;
+            }
+            last = chunk.keys[chunk.size - 1];
+        }
+        return true;
+    }
+
+    /**
+     * Split a range of the file into chunks of about chunkSize bytes, each ending right after a line break (or at
+     * the end of the range).
+     *
+     * @return the offsets where the chunks start, followed by the end of the range.
+     */
+    static long[] split(FileChannel channel, long start, long size, int chunkSize) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+
+        bounds.add(start);
+        while (start < size) {
+            long end = start + chunkSize;
+            if (end >= size) {
+                end = size;
+            } else {
+                end = nextLine(channel, buf, end - 1, size);
+            }
+            bounds.add(end);
+            start = end;
+        }
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the offset right after the first line break at or after position (or the size of the file).
+     */
+    private static long nextLine(FileChannel channel, ByteBuffer buf, long position, long size) throws IOException {
+        while (position < size) {
+            buf.clear();
+            int read = channel.read(buf, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * @return the offset right after the last line break between start and end (or start, if there is none).
+     */
+    private static long lastLine(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (end > start) {
+            int length = (int) Math.min(buf.capacity(), end - start);
+            buf.clear().limit(length);
+            long position = end - length;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) {
+                    throw new IOException("File changed while it was being read");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    return position + i + 1;
+                }
+            }
+            end = position;
+        }
+        return start;
+    }
+
+    /**
+     * The parsed lines of a chunk.
+     */
+    static class Chunk {
+        String[] keys;
+        String[] values;
+        int size;
+        boolean sorted = true; // true if the keys are strictly increasing
+
+        Chunk(int capacity) {
+            keys = new String[capacity];
+            values = new String[capacity];
+        }
+
+        void add(String key, String value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2 + 1);
+                values = Arrays.copyOf(values, size * 2 + 1);
+            }
+            if (size > 0 && sorted && keys[size - 1].compareTo(key) >= 0) {
+                sorted = false;
+            }
+            keys[size] = key;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * Parses a range of chunks, splitting it in two until there is a single chunk to parse.
+     */
+    private static class ParseTask extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final StringPool pool; // null to keep every definition
+
+        ParseTask(FileChannel channel, long[] bounds, int from, int to, StringPool pool) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.pool = pool;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (to - from <= 1) {
+                try {
+                    if (to == from) {
+                        return Collections.emptyList();
+                    }
+                    return Collections.singletonList(parse(bounds[from], bounds[to]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask second = new ParseTask(channel, bounds, mid, to, pool);
+            second.fork();
+            List<Chunk> chunks = new ArrayList<>(new ParseTask(channel, bounds, from, mid, pool).compute());
+            chunks.addAll(second.join());
+            return chunks;
+        }
+
+        private Chunk parse(long start, long end) throws IOException {
+            byte[] bytes = new byte[(int) (end - start)];
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, start + buf.position()) < 0) {
+                    throw new IOException("File changed while it was being read");
+                }
+            }
+
+            Chunk chunk = new Chunk(bytes.length / 32 + 1);
+            int lineStart = 0;
+            int colon = -1; // the first ':' in the line
+            for (int i = 0; i < bytes.length; i++) {
+                byte b = bytes[i];
+                if (b == ':' && colon < 0) {
+                    colon = i;
+                } else if (b == '\n' || b == '\r') {
+                    addLine(chunk, bytes, lineStart, colon, i);
+                    lineStart = i + 1;
+                    colon = -1;
+                }
+            }
+            addLine(chunk, bytes, lineStart, colon, bytes.length); // the last line may not end with a newline
+            return chunk;
+        }
+
+        private void addLine(Chunk chunk, byte[] bytes, int start, int colon, int end) {
+            if (colon < 0) { // not a word:def line (or an empty line)
+                return;
+            }
+            String key = new String(bytes, start, colon - start, StandardCharsets.UTF_8);
+            String value = new String(bytes, colon + 1, end - colon - 1, StandardCharsets.UTF_8);
+            if (pool != null) { // keep the copy in the pool, and let this one be collected
+                value = pool.intern(value);
+            }
+            chunk.add(key, value);
+        }
+    }
+
+    /**
+     * A read-only view of (a range of the entries of) sorted chunks as a {@link SortedMap}, so that
+     * {@link TreeMap#putAll(Map)} can build the tree directly. The entries are numbered across the chunks, and the
+     * views of parts of the map are ranges of these numbers, found by binary search.
+     */
+    static class SortedChunks extends AbstractMap<String, String> implements SortedMap<String, String> {
+        private final List<Chunk> chunks; // not empty
+        private final int[] starts; // the number of the first entry of each chunk, and of all the entries
+        private final int from; // the entries of the view
+        private final int to;
+
+        SortedChunks(List<Chunk> chunks) {
+            List<Chunk> nonEmpty = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                if (chunk.size > 0) {
+                    nonEmpty.add(chunk);
+                }
+            }
+            int[] starts = new int[nonEmpty.size() + 1];
+            for (int i = 0; i < nonEmpty.size(); i++) {
+                starts[i + 1] = starts[i] + nonEmpty.get(i).size;
+            }
+            this.chunks = nonEmpty;
+            this.starts = starts;
+            this.from = 0;
+            this.to = starts[nonEmpty.size()];
+        }
+
+        private SortedChunks(SortedChunks all, int from, int to) {
+            this.chunks = all.chunks;
+            this.starts = all.starts;
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        /**
+         * @return the chunk of an entry.
+         */
+        private int chunkOf(int index) {
+            int i = Arrays.binarySearch(starts, index);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        private String keyAt(int index) {
+            int chunk = chunkOf(index);
+            return chunks.get(chunk).keys[index - starts[chunk]];
+        }
+
+        /**
+         * @return the first entry of the view whose key is at least key (or the end of the view).
+         */
+        private int lowerBound(String key) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keyAt(mid).compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        @Override
+        public String firstKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return keyAt(from);
+        }
+
+        @Override
+        public String lastKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return keyAt(to - 1);
+        }
+
+        @Override
+        public SortedMap<String, String> subMap(String fromKey, String toKey) {
+            if (fromKey.compareTo(toKey) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new SortedChunks(this, lowerBound(fromKey), lowerBound(toKey));
+        }
+
+        @Override
+        public SortedMap<String, String> headMap(String toKey) {
+            return new SortedChunks(this, from, lowerBound(toKey));
+        }
+
+        @Override
+        public SortedMap<String, String> tailMap(String fromKey) {
+            return new SortedChunks(this, lowerBound(fromKey), to);
+        }
+
+        @Override
+        public String get(Object key) {
+            int index = lowerBound((String) key);
+            if (index == to || !keyAt(index).equals(key)) {
+                return null;
+            }
+            int chunk = chunkOf(index);
+            return chunks.get(chunk).values[index - starts[chunk]];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int index = lowerBound((String) key);
+            return index < to && keyAt(index).equals(key);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int index = from;
+                        private int chunk = from < to ? chunkOf(from) : 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < to;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            if (index == starts[chunk + 1]) {
+                                chunk++;
+                            }
+                            Chunk current = chunks.get(chunk);
+                            int i = index++ - starts[chunk];
+                            return new SimpleImmutableEntry<>(current.keys[i], current.values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+    }
+}
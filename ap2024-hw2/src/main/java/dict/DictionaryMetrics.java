@@ -0,0 +1,224 @@
+package dict;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of the operations on a dictionary, collected by an {@link InstrumentedDictionary}: the number of
+ * operations and a {@link LatencyHistogram} of each kind, the hits and misses of lookups, the bytes read and written,
+ * and the number of words (of all the open dictionaries that share the metrics, as each of them counts them: the JMX
+ * view never calls into a dictionary, which may not be thread-safe).
+ * <p>
+ * The statistics can be read directly, or through JMX after {@link #register(String)}.
+ */
+public class DictionaryMetrics implements DictionaryMetricsMXBean {
+    /**
+     * The operations that are measured.
+     */
+    public enum Operation {
+        OPEN, CLOSE, GET, PUT, REMOVE,
+        /**
+         * A {@link PersistentDictionary#clear()}, timed as a whole (the words it removed are counted separately).
+         */
+        CLEAR,
+        /**
+         * A {@link WriteBatch} applied, timed as a whole (the words it put and removed are counted separately).
+         */
+        BATCH
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final EnumMap<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder clearedWords = new LongAdder();
+    private final LongAdder batchPuts = new LongAdder();
+    private final LongAdder batchRemoves = new LongAdder();
+    private final LongAdder entryCount = new LongAdder(); // not reset: it's the words there are now
+
+    public DictionaryMetrics() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    void record(Operation operation, long nanos) {
+        latencies.get(operation).record(nanos);
+    }
+
+    void recordLookup(boolean hit) {
+        (hit ? hits : misses).increment();
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void addClearedWords(long words) {
+        clearedWords.add(words);
+    }
+
+    void addBatch(long puts, long removes) {
+        batchPuts.add(puts);
+        batchRemoves.add(removes);
+    }
+
+    /**
+     * Add to the number of words (or subtract, if words is negative).
+     */
+    void addEntryCount(long words) {
+        entryCount.add(words);
+    }
+
+    /**
+     * @return the histogram of the latencies of an operation.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    public long getCount(Operation operation) {
+        return latencies.get(operation).getCount();
+    }
+
+    @Override
+    public long getOpenCount() {
+        return getCount(Operation.OPEN);
+    }
+
+    @Override
+    public long getCloseCount() {
+        return getCount(Operation.CLOSE);
+    }
+
+    @Override
+    public long getGetCount() {
+        return getCount(Operation.GET);
+    }
+
+    @Override
+    public long getPutCount() {
+        return getCount(Operation.PUT);
+    }
+
+    @Override
+    public long getRemoveCount() {
+        return getCount(Operation.REMOVE);
+    }
+
+    @Override
+    public long getClearCount() {
+        return getCount(Operation.CLEAR);
+    }
+
+    @Override
+    public long getBatchCount() {
+        return getCount(Operation.BATCH);
+    }
+
+    @Override
+    public long getClearedWords() {
+        return clearedWords.sum();
+    }
+
+    @Override
+    public long getBatchPuts() {
+        return batchPuts.sum();
+    }
+
+    @Override
+    public long getBatchRemoves() {
+        return batchRemoves.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long lookups = hits + misses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount.sum();
+    }
+
+    @Override
+    public Map<String, Long> getLatencies() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+            String name = entry.getKey().name().toLowerCase();
+            LatencyHistogram histogram = entry.getValue();
+            result.put(name + ".mean", Math.round(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                String label = percentile == 99.9 ? "p999" : "p" + (int) percentile;
+                result.put(name + "." + label, histogram.getValueAtPercentile(percentile));
+            }
+            result.put(name + ".max", histogram.getMax());
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+        hits.reset();
+        misses.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        clearedWords.reset();
+        batchPuts.reset();
+        batchRemoves.reset();
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, as dict:type=DictionaryMetrics,name=name.
+     *
+     * @param name the name of the dictionary
+     * @return the name of the MBean (to unregister it)
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("dict:type=DictionaryMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregister metrics that were registered with {@link #register(String)}.
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+}
@@ -0,0 +1,62 @@
+package dict;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link DictionaryMetrics}.
+ */
+public interface DictionaryMetricsMXBean {
+    long getOpenCount();
+
+    long getCloseCount();
+
+    long getGetCount();
+
+    long getPutCount();
+
+    long getRemoveCount();
+
+    long getClearCount();
+
+    long getBatchCount();
+
+    /**
+     * @return the number of words removed by clear() (which aren't counted as removes).
+     */
+    long getClearedWords();
+
+    /**
+     * @return the number of words put by batches (which aren't counted as puts).
+     */
+    long getBatchPuts();
+
+    /**
+     * @return the number of words removed by batches (which aren't counted as removes).
+     */
+    long getBatchRemoves();
+
+    /**
+     * @return the fraction of lookups that found their word.
+     */
+    double getHitRate();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /**
+     * @return the number of words in the dictionary.
+     */
+    long getEntryCount();
+
+    /**
+     * @return latency statistics in nanoseconds, by operation and statistic, e.g. "open.p99" or "get.max"
+     * (the statistics are mean, p50, p90, p99, p999 and max).
+     */
+    Map<String, Long> getLatencies();
+
+    /**
+     * Forget all the statistics collected so far.
+     */
+    void reset();
+}
@@ -0,0 +1,68 @@
+package dict;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Batches concurrent flush requests, so that many threads asking to flush at about the same time share a single
+ * flush (and a single fsync).
+ * <p>
+ * A thread that asks for a flush while none is running becomes the leader and runs the flush. Threads that ask while
+ * a flush is running wait for it to finish, and then the first of them runs one more flush for all of them (that
+ * flush starts after their request, so it covers all their changes). If a flush fails, only its leader gets the
+ * error, and the threads waiting for it run another flush.
+ */
+class GroupCommit {
+    /**
+     * The flush to run. It must write everything changed before it was called.
+     */
+    interface Flush {
+        void run() throws IOException;
+    }
+
+    private final Flush flush;
+    private long requested; // number of requests so far
+    private long completed; // all requests up to this one are flushed
+    private boolean running;
+
+    GroupCommit(Flush flush) {
+        this.flush = flush;
+    }
+
+    /**
+     * Return once a flush that started after this call has completed.
+     */
+    void commit() throws IOException {
+        long covers;
+        synchronized (this) {
+            long ticket = ++requested;
+            while (running) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for a flush");
+                }
+                if (completed >= ticket) { // somebody else flushed for us
+                    return;
+                }
+            }
+            running = true;
+            covers = requested; // every request so far was made before this flush starts
+        }
+
+        boolean success = false;
+        try {
+            flush.run();
+            success = true;
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (success) {
+                    completed = covers;
+                }
+                notifyAll();
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package dict;
 
-import java.io.*;
+import java.util.Iterator;
 import java.util.Map;
 import java.io.File;
 import java.io.IOException;
@@ -9,7 +9,8 @@ import java.util.TreeMap;
 
 /**
  * Implements a persistent dictionary that can be held entirely in memory.
- * When flushed, it writes the entire dictionary back to a file.
+ * When flushed, it writes the entire dictionary back to a file (atomically: a crash in the middle
+ * of a flush leaves the previous contents of the file).
  * <p>
  * The file format has one keyword per line:
  * <pre>word:def</pre>
@@ -20,7 +21,8 @@ import java.util.TreeMap;
  */
 public class InMemoryDictionary extends TreeMap<String, String> implements PersistentDictionary {
     private static final long serialVersionUID = 1L; // (because we're extending a serializable class)
-    private File dictFile;
+    File dictFile;
+    private StringPool pool; // shares equal definitions when loading (null if not)
 
     public InMemoryDictionary(File dictFile) throws IOException {
         super();
@@ -28,6 +30,20 @@ public class InMemoryDictionary extends TreeMap<String, String> implements Persi
         open();
     }
 
+    /**
+     * Open a dictionary that stores equal definitions in the file once, sharing them through a pool (possibly with
+     * other dictionaries that use the same pool).
+     *
+     * @param dictFile the dictionary file
+     * @param pool     the pool of strings
+     */
+    public InMemoryDictionary(File dictFile, StringPool pool) throws IOException {
+        super();
+        this.dictFile = dictFile;
+        this.pool = pool;
+        open();
+    }
+
     @Override
     public void open() throws IOException {
         clear();
@@ -35,33 +51,36 @@ public class InMemoryDictionary extends TreeMap<String, String> implements Persi
         if (!dictFile.exists()) { // if file doesn't exist break
             return;
         }
-        String line;
-        FileReader fileReader = new FileReader(dictFile);
-        BufferedReader reader = new BufferedReader(fileReader);
-
-        while ((line = reader.readLine()) != null) { // while we have lines to read
-            String[] parts = line.split(":", 2); // split by ":"
-
-            // place parts in dictionary
-            if (parts.length == 2) {
-                String key = parts[0];
-                String value = parts[1];
-                put(key, value);
-            }
+        if (pool != null) {
+            DictionaryLoader.load(dictFile, this, pool);
+        } else {
+            DictionaryLoader.load(dictFile, this); // parse the file in parallel chunks
         }
     }
 
 
     @Override
     public void close() throws IOException {
-        FileWriter fileWriter = new FileWriter(dictFile);
-        BufferedWriter writer = new BufferedWriter(fileWriter);
+        // write to a temporary file that replaces dictFile only once it's safely on disk
+        try (AtomicFileWriter writer = new AtomicFileWriter(dictFile)) {
+            for (Map.Entry<String, String> entry : entrySet()) { //for each entry, write key and value
+                writer.writeEntry(entry.getKey(), entry.getValue());
+            }
+            writer.commit();
+        }
+    }
 
-        for (Map.Entry<String, String> entry : entrySet()) { //for each entry, write key and value
-            String line = entry.getKey() + ":" + entry.getValue();
-            writer.write(line);
-            writer.newLine();
+    @Override
+    public void apply(WriteBatch batch) {
+        if (isEmpty() && !batch.hasRemovals()) {
+            super.putAll(batch.changes()); // TreeMap builds itself from a sorted map in linear time
+        } else {
+            PersistentDictionary.super.apply(batch);
         }
-        writer.close();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return Ranges.of(this, from, to);
     }
 }
@@ -0,0 +1,297 @@
+package dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A dictionary that measures the operations on another dictionary and collects them in {@link DictionaryMetrics}
+ * (and passes them on to a {@link DictionaryListener}, if one is set).
+ * <p>
+ * Bytes read and written are measured from the files of the dictionary: its file and the files next to it whose
+ * names are its name followed by a dot and a suffix (such as logs and Bloom filters). Opening counts the size of
+ * these files as read; closing counts as written what was appended to a file since it was last opened or closed, or
+ * all of a file that was replaced.
+ * <p>
+ * Instrumentation can be turned off with {@link #setEnabled(boolean)}; operations then cost one extra check.
+ * The dictionary is as thread-safe as the one it measures.
+ */
+public class InstrumentedDictionary implements PersistentDictionary {
+    private final PersistentDictionary store;
+    private final File dictFile;
+    private final DictionaryMetrics metrics;
+    private volatile boolean enabled = true;
+    private volatile DictionaryListener listener;
+    private Map<String, FileState> files; // the files when the dictionary was last opened or closed
+    private final AtomicLong entries = new AtomicLong(); // the words of the dictionary counted in the metrics
+    private volatile boolean counted; // whether its words are counted (while it's open)
+
+    /**
+     * Measure a dictionary (that was already opened).
+     *
+     * @param store    the dictionary to measure
+     * @param dictFile the file of the dictionary
+     */
+    public InstrumentedDictionary(PersistentDictionary store, File dictFile) {
+        this(store, dictFile, new DictionaryMetrics());
+    }
+
+    /**
+     * Measure a dictionary, adding to existing metrics (e.g. those of other dictionaries of the same kind).
+     */
+    public InstrumentedDictionary(PersistentDictionary store, File dictFile, DictionaryMetrics metrics) {
+        this.store = store;
+        this.dictFile = dictFile.getAbsoluteFile();
+        this.metrics = metrics;
+        this.files = listFiles();
+        this.counted = true;
+        countEntries();
+    }
+
+    public DictionaryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Turn the instrumentation on or off.
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) { // don't count what was written while it was off
+            files = listFiles();
+            countEntries();
+        }
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param listener notified of every operation, or null for none
+     */
+    public void setListener(DictionaryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Count the words of the dictionary again (on the thread that uses it, since it may not be thread-safe).
+     */
+    private void countEntries() {
+        if (counted) {
+            long words = store.size();
+            metrics.addEntryCount(words - entries.getAndSet(words));
+        }
+    }
+
+    /**
+     * Add to the words of the dictionary (or subtract, if words is negative).
+     */
+    private void addEntries(long words) {
+        if (counted) {
+            entries.addAndGet(words);
+            metrics.addEntryCount(words);
+        }
+    }
+
+    private void completed(DictionaryMetrics.Operation operation, long start) {
+        long nanos = System.nanoTime() - start;
+        metrics.record(operation, nanos);
+        DictionaryListener listener = this.listener;
+        if (listener != null) {
+            listener.operationCompleted(operation, nanos);
+        }
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (!enabled) {
+            store.open();
+            counted = true;
+            countEntries();
+            return;
+        }
+        long start = System.nanoTime();
+        store.open();
+        completed(DictionaryMetrics.Operation.OPEN, start);
+        counted = true;
+        countEntries();
+
+        files = listFiles();
+        long bytes = 0;
+        for (FileState file : files.values()) {
+            bytes += file.size;
+        }
+        metrics.addBytesRead(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        counted = false; // until it's opened again
+        metrics.addEntryCount(-entries.getAndSet(0));
+        if (!enabled) {
+            store.close();
+            return;
+        }
+        long start = System.nanoTime();
+        store.close();
+        completed(DictionaryMetrics.Operation.CLOSE, start);
+
+        Map<String, FileState> before = files;
+        files = listFiles();
+        long bytes = 0;
+        for (Map.Entry<String, FileState> entry : files.entrySet()) {
+            FileState now = entry.getValue();
+            FileState old = before.get(entry.getKey());
+            if (old == null || !now.sameFile(old) || now.size < old.size) { // a new file
+                bytes += now.size;
+            } else if (now.modified != old.modified || now.size > old.size) { // appended to (or rewritten in place)
+                bytes += now.size > old.size ? now.size - old.size : now.size;
+            }
+        }
+        metrics.addBytesWritten(bytes);
+    }
+
+    /**
+     * The identity, size and modification time of a file.
+     */
+    private static class FileState {
+        final Object key;
+        final long size;
+        final long modified;
+
+        FileState(BasicFileAttributes attributes) {
+            this.key = attributes.fileKey();
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+        }
+
+        boolean sameFile(FileState other) {
+            return key != null && Objects.equals(key, other.key);
+        }
+    }
+
+    /**
+     * @return the state of the files of the dictionary, by name.
+     */
+    private Map<String, FileState> listFiles() {
+        Map<String, FileState> files = new HashMap<>();
+        String base = dictFile.getName();
+        File[] list = dictFile.getParentFile().listFiles(
+                (dir, name) -> name.equals(base) || name.startsWith(base + "."));
+        if (list != null) {
+            for (File file : list) {
+                try {
+                    files.put(file.getName(), new FileState(
+                            Files.readAttributes(file.toPath(), BasicFileAttributes.class)));
+                } catch (IOException e) {
+                    // deleted in the meantime (e.g. a temporary file)
+                }
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!enabled) {
+            return store.get(key);
+        }
+        long start = System.nanoTime();
+        String value = store.get(key);
+        completed(DictionaryMetrics.Operation.GET, start);
+        metrics.recordLookup(value != null);
+        return value;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (!enabled) {
+            return store.put(key, value);
+        }
+        long start = System.nanoTime();
+        String old = store.put(key, value);
+        completed(DictionaryMetrics.Operation.PUT, start);
+        if (old == null) {
+            addEntries(1);
+        }
+        return old;
+    }
+
+    /**
+     * Lookups with containsKey count as lookups (hits or misses), and are timed as {@code GET}s.
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        if (!enabled) {
+            return store.containsKey(key);
+        }
+        long start = System.nanoTime();
+        boolean found = store.containsKey(key);
+        completed(DictionaryMetrics.Operation.GET, start);
+        metrics.recordLookup(found);
+        return found;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!enabled) {
+            return store.remove(key);
+        }
+        long start = System.nanoTime();
+        String old = store.remove(key);
+        completed(DictionaryMetrics.Operation.REMOVE, start);
+        if (old != null) {
+            addEntries(-1);
+        }
+        return old;
+    }
+
+    /**
+     * Counts as a single {@code CLEAR}, and the words it removed as cleared words.
+     */
+    @Override
+    public void clear() {
+        if (!enabled) {
+            store.clear();
+            return;
+        }
+        long start = System.nanoTime();
+        store.clear();
+        completed(DictionaryMetrics.Operation.CLEAR, start);
+        metrics.addClearedWords(entries.get());
+        countEntries();
+    }
+
+    /**
+     * Counts as a single {@code BATCH}, and the words in it as batch puts and removes.
+     */
+    @Override
+    public void apply(WriteBatch batch) {
+        if (!enabled) {
+            store.apply(batch);
+            return;
+        }
+        long start = System.nanoTime();
+        store.apply(batch);
+        completed(DictionaryMetrics.Operation.BATCH, start);
+        metrics.addBatch(batch.size() - batch.removals(), batch.removals());
+        countEntries();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return store.range(from, to);
+    }
+}
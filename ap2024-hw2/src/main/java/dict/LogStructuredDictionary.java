@@ -0,0 +1,317 @@
+package dict;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+
+/**
+ * Implements a persistent dictionary that is held in memory, but only writes the
+ * changes made since the last {@link #close()} back to disk.
+ * <p>
+ * The dictionary is stored in two files:
+ * <ul>
+ *     <li>The base file, in the same format as {@link InMemoryDictionary} (one <pre>word:def</pre> per line).</li>
+ *     <li>An append-only log next to it (the base file name with a {@code .log} suffix). Each flush appends one
+ *     record per changed key, followed by a commit line:
+ *     <pre>
+ *     +word:def    (the word was put)
+ *     -word        (the word was removed)
+ *     *            (the dictionary was cleared)
+ *     .            (commit: all the records above it are complete)
+ *     </pre></li>
+ * </ul>
+ * Records after the last commit line (e.g. from a crash in the middle of a flush) are ignored when the
+ * dictionary is opened.
+ * <p>
+ * Once the log grows larger than the base file, it is moved aside and merged into the base file by a background
+ * thread, so the cost of {@link #close()} stays proportional to the number of changes.
+ * <p>
+ * The base file is created by the first {@link #close()}; if it is deleted, the dictionary is considered empty and
+ * any logs left next to it are discarded.
+ * As in {@link InMemoryDictionary}, words may not contain ':' and neither words nor definitions may contain line
+ * breaks. Null definitions are not allowed.
+ */
+public class LogStructuredDictionary implements PersistentDictionary {
+    static final String LOG_SUFFIX = ".log";
+    static final String COMPACTING_SUFFIX = ".log.old";
+    static final long MIN_COMPACTION_SIZE = 1 << 20; // don't bother compacting logs smaller than this (in bytes)
+
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+    private static final char CLEAR = '*';
+    private static final char COMMIT = '.';
+
+    // A single background thread merges logs into their base files, for all the dictionaries.
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dictionary-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Compactions that haven't finished yet, by the (absolute) base file they write to.
+    private static final Map<File, Future<?>> PENDING = new ConcurrentHashMap<>();
+
+    private final File dictFile;
+    private final File logFile;
+    private final File compactingFile;
+
+    private TreeMap<String, String> map = new TreeMap<>();
+    private final Map<String, String> dirty = new HashMap<>(); // changes since the last flush (null means removed)
+    private boolean cleared; // true if clear() was called since the last flush
+
+    public LogStructuredDictionary(File dictFile) throws IOException {
+        this.dictFile = dictFile.getAbsoluteFile();
+        this.logFile = new File(this.dictFile.getPath() + LOG_SUFFIX);
+        this.compactingFile = new File(this.dictFile.getPath() + COMPACTING_SUFFIX);
+        open();
+    }
+
+    @Override
+    public void open() throws IOException {
+        awaitCompaction(dictFile);
+
+        map = new TreeMap<>();
+        dirty.clear();
+        cleared = false;
+
+        if (!dictFile.exists()) { // no base file means no dictionary, so any old logs are stale
+            compactingFile.delete();
+            logFile.delete();
+            return;
+        }
+        readBase(dictFile, map);
+        replayLog(compactingFile, map); // a compaction that didn't finish (replaying it twice is harmless)
+        replayLog(logFile, map);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!dictFile.exists()) { // the base file marks that the dictionary exists
+            dictFile.createNewFile();
+        }
+        if (cleared || !dirty.isEmpty()) {
+            appendToLog();
+            dirty.clear();
+            cleared = false;
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public String get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (value == null) {
+            throw new NullPointerException("null definitions are not supported");
+        }
+        String old = map.put(key, value);
+        dirty.put(key, value);
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public String remove(Object key) {
+        String old = map.remove(key);
+        if (old != null) { // only log removals of words that were actually there
+            dirty.put((String) key, null);
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        dirty.clear();
+        cleared = true;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        return Ranges.of(map, from, to);
+    }
+
+    /**
+     * Append all the changes since the last flush to the log as a single committed group of records,
+     * and force them to the disk.
+     */
+    private void appendToLog() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(logFile, true);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            if (cleared) {
+                writer.write(CLEAR);
+                writer.write('\n');
+            }
+            for (Map.Entry<String, String> entry : dirty.entrySet()) {
+                if (entry.getValue() == null) {
+                    writer.write(REMOVE);
+                    writer.write(entry.getKey());
+                } else {
+                    writer.write(PUT);
+                    writer.write(entry.getKey());
+                    writer.write(':');
+                    writer.write(entry.getValue());
+                }
+                writer.write('\n');
+            }
+            writer.write(COMMIT);
+            writer.write('\n');
+            writer.flush();
+            out.getChannel().force(false); // the changes are only persistent once they reach the disk
+        }
+    }
+
+    /**
+     * If the log has grown larger than the base file, move it aside and merge it into the base file
+     * in the background.
+     */
+    private void maybeCompact() {
+        if (PENDING.containsKey(dictFile)) { // already compacting, the log will be merged next time
+            return;
+        }
+        if (!compactingFile.exists()) { // if a previous compaction failed, retry it before starting a new one
+            long logSize = logFile.length();
+            if (logSize < MIN_COMPACTION_SIZE || logSize < dictFile.length()) {
+                return;
+            }
+            if (!logFile.renameTo(compactingFile)) {
+                return;
+            }
+        }
+        File base = dictFile;
+        File compacting = compactingFile;
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                compact(base, compacting);
+            } finally {
+                PENDING.remove(base);
+            }
+            return null;
+        });
+        PENDING.put(base, task); // registered before it runs, so it can't remove itself too early
+        COMPACTOR.execute(task);
+    }
+
+    /**
+     * Wait for a background compaction of the given base file to finish, if there is one.
+     */
+    static void awaitCompaction(File dictFile) throws IOException {
+        Future<?> pending = PENDING.get(dictFile.getAbsoluteFile());
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for compaction");
+        } catch (ExecutionException e) {
+            // The log that failed to compact is still on disk and will be replayed, so this isn't fatal.
+        }
+    }
+
+    /**
+     * Merge a log into its base file: write the merged dictionary to a temporary file, replace the base
+     * file with it and only then delete the log.
+     */
+    static void compact(File dictFile, File log) throws IOException {
+        TreeMap<String, String> merged = new TreeMap<>();
+        readBase(dictFile, merged);
+        replayLog(log, merged);
+
+        try (AtomicFileWriter writer = new AtomicFileWriter(dictFile)) {
+            for (Map.Entry<String, String> entry : merged.entrySet()) {
+                writer.writeEntry(entry.getKey(), entry.getValue());
+            }
+            writer.commit();
+        }
+        log.delete();
+    }
+
+    /**
+     * Read a base file (one <pre>word:def</pre> per line) into the map.
+     */
+    static void readBase(File file, Map<String, String> map) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(":", 2);
+                if (parts.length == 2) {
+                    map.put(parts[0], parts[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply the committed records of a log to the map. Records after the last commit line are ignored.
+     */
+    static void replayLog(File file, Map<String, String> map) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            Map<String, String> group = new HashMap<>(); // records since the last commit (null means removed)
+            boolean groupCleared = false;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                switch (line.charAt(0)) {
+                    case PUT:
+                        String[] parts = line.substring(1).split(":", 2);
+                        if (parts.length == 2) {
+                            group.put(parts[0], parts[1]);
+                        }
+                        break;
+                    case REMOVE:
+                        group.put(line.substring(1), null);
+                        break;
+                    case CLEAR:
+                        group.clear();
+                        groupCleared = true;
+                        break;
+                    case COMMIT: // the group is complete, apply it
+                        if (groupCleared) {
+                            map.clear();
+                        }
+                        for (Map.Entry<String, String> entry : group.entrySet()) {
+                            if (entry.getValue() == null) {
+                                map.remove(entry.getKey());
+                            } else {
+                                map.put(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        group.clear();
+                        groupCleared = false;
+                        break;
+                    default: // not a record we know, skip it
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package dict;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Implements a persistent dictionary for read-mostly workloads: the file is memory-mapped when the dictionary is
+ * opened, and words are looked up by binary search over the mapped file, so nothing is loaded up-front.
+ * Changes are kept in memory, and when flushed the whole file is rewritten (to a temporary file, which then
+ * replaces the original).
+ * <p>
+ * The file is a sorted binary file (all integers are 32-bit, most-significant byte first):
+ * <pre>
+ * header:  magic ("MDIC"), version
+ * entries: keyLength, key (UTF-8), valueLength, value (UTF-8)     (sorted by key)
+ * index:   the offset of each entry in the file                    (in the same order)
+ * trailer: number of entries, offset of the index, CRC-32 of the keys, magic
+ * </pre>
+ * If the file exists but isn't in this format, it is read as a text file in the {@link InMemoryDictionary} format
+ * and converted when the dictionary is opened.
+ * <p>
+ * Since the file is mapped as a single buffer, it is limited to 2GB.
+ * <p>
+ * Optionally, a {@link BloomFilter} of the words in the file is kept next to it (in dictFile.bloom), and lookups of
+ * words it rules out don't search the file. The filter is built when the dictionary is opened (if it is missing or
+ * out of date, which is checked by the CRC-32 of the keys in the trailer of the file, so the keys aren't read) and
+ * whenever the file is rewritten.
+ */
+public class MappedDictionary extends OverlayDictionary {
+    static final int MAGIC = 0x4d444943; // "MDIC"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8;
+    static final int TRAILER_SIZE = 16;
+
+    static final String BLOOM_SUFFIX = ".bloom";
+
+    private final File dictFile;
+    private final double falsePositiveRate; // of the Bloom filter, 0 if there is none
+    private BloomFilter filter; // null if there is no filter (or the file is empty)
+    private long savedLookups;
+
+    public MappedDictionary(File dictFile) throws IOException {
+        this.dictFile = dictFile;
+        this.falsePositiveRate = 0;
+        open();
+    }
+
+    /**
+     * Open a dictionary that uses a Bloom filter to skip lookups of missing words.
+     *
+     * @param dictFile          the dictionary file
+     * @param falsePositiveRate the rate at which the filter lets through lookups of missing words
+     */
+    public MappedDictionary(File dictFile, double falsePositiveRate) throws IOException {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        this.dictFile = dictFile;
+        this.falsePositiveRate = falsePositiveRate;
+        open();
+    }
+
+    @Override
+    SortedTable load() throws IOException {
+        filter = null;
+        if (!dictFile.exists() || dictFile.length() == 0) {
+            return SortedTable.EMPTY;
+        }
+        if (!isMapped(dictFile)) { // an old text dictionary, convert it first
+            InMemoryDictionary text = new InMemoryDictionary(dictFile);
+            write(dictFile, text.entrySet().iterator());
+        }
+        Table table = map(dictFile);
+        if (falsePositiveRate > 0) {
+            filter = loadFilter(table);
+        }
+        return table;
+    }
+
+    /**
+     * Read the Bloom filter of the file, or build it (and save it) if it is missing, out of date or was built for
+     * a different false-positive rate.
+     */
+    private BloomFilter loadFilter(Table table) throws IOException {
+        File bloomFile = new File(dictFile.getPath() + BLOOM_SUFFIX);
+        int checksum = table.getKeyChecksum();
+        BloomFilter loaded = BloomFilter.read(bloomFile, dictFile, table.size(), checksum);
+        if (loaded != null && loaded.getFalsePositiveRate() == falsePositiveRate) {
+            return loaded;
+        }
+        BloomFilter built = new BloomFilter(table.size(), falsePositiveRate);
+        for (int i = 0; i < table.size(); i++) {
+            built.add(table.keyAt(i));
+        }
+        built.write(bloomFile, dictFile, table.size(), checksum);
+        return built;
+    }
+
+    @Override
+    void write() throws IOException {
+        if (falsePositiveRate == 0) {
+            write(dictFile, entries());
+            return;
+        }
+        // Build the filter of the new file while writing it
+        BloomFilter built = new BloomFilter(size(), falsePositiveRate);
+        Iterator<Map.Entry<String, String>> entries = entries();
+        int checksum = write(dictFile, new Iterator<Map.Entry<String, String>>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, String> next() {
+                Map.Entry<String, String> entry = entries.next();
+                built.add(entry.getKey());
+                return entry;
+            }
+        });
+        built.write(new File(dictFile.getPath() + BLOOM_SUFFIX), dictFile, size(), checksum);
+    }
+
+    @Override
+    String getFromBase(String key) {
+        if (filter != null && !filter.mightContain(key)) {
+            savedLookups++;
+            return null;
+        }
+        return super.getFromBase(key);
+    }
+
+    @Override
+    String findInBase(String key) {
+        if (filter != null && !filter.mightContain(key)) { // not a lookup, so it isn't counted as a saved one
+            return null;
+        }
+        return super.getFromBase(key);
+    }
+
+    /**
+     * @return the false-positive rate of the Bloom filter, or 0 if the dictionary doesn't use one.
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return the number of lookups that the Bloom filter answered without searching the file.
+     */
+    public long getSavedLookups() {
+        return savedLookups;
+    }
+
+    /**
+     * @return true if the file starts with the magic number of a mapped dictionary.
+     */
+    static boolean isMapped(File file) throws IOException {
+        if (file.length() < HEADER_SIZE + TRAILER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Map a dictionary file into memory.
+     */
+    static Table map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Dictionary file is too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            int trailer = (int) length - TRAILER_SIZE;
+            if (buf.getInt(0) != MAGIC || buf.getInt(trailer + 12) != MAGIC) {
+                throw new IOException("Not a mapped dictionary file: " + file);
+            }
+            if (buf.getInt(4) != VERSION) {
+                throw new IOException("Unsupported mapped dictionary version " + buf.getInt(4) + ": " + file);
+            }
+            int count = buf.getInt(trailer);
+            int indexOffset = buf.getInt(trailer + 4);
+            if (count < 0 || indexOffset < HEADER_SIZE || indexOffset + 4L * count != trailer) {
+                throw new IOException("Corrupt mapped dictionary file: " + file);
+            }
+            return new Table(buf, count, indexOffset, buf.getInt(trailer + 8));
+        }
+    }
+
+    /**
+     * Write sorted entries as a dictionary file (atomically replacing the file).
+     *
+     * @return the CRC-32 of the keys that were written (their UTF-8 bytes, in order), which is also written in the
+     * trailer of the file.
+     */
+    static int write(File file, Iterator<Map.Entry<String, String>> entries) throws IOException {
+        CRC32 crc = new CRC32();
+        int[] offsets = new int[1024];
+        int count = 0;
+        long offset = HEADER_SIZE;
+
+        try (AtomicFileWriter out = new AtomicFileWriter(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            while (entries.hasNext()) {
+                Map.Entry<String, String> entry = entries.next();
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = (int) offset;
+
+                out.writeInt(key.length);
+                out.write(key);
+                crc.update(key);
+                out.writeInt(value.length);
+                out.write(value);
+                offset += 8 + key.length + value.length;
+                if (offset + 4L * count + TRAILER_SIZE > Integer.MAX_VALUE) {
+                    throw new IOException("Dictionary is too large to map: " + file);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(count);
+            out.writeInt((int) offset);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(MAGIC);
+            out.commit();
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A table over a mapped dictionary file.
+     */
+    static class Table extends SortedTable {
+        private final ByteBuffer buf;
+        private final int count;
+        private final int indexOffset;
+        private final int keyChecksum;
+
+        Table(ByteBuffer buf, int count, int indexOffset, int keyChecksum) {
+            this.buf = buf;
+            this.count = count;
+            this.indexOffset = indexOffset;
+            this.keyChecksum = keyChecksum;
+        }
+
+        private int entryOffset(int index) {
+            return buf.getInt(indexOffset + 4 * index);
+        }
+
+        @Override
+        int size() {
+            return count;
+        }
+
+        @Override
+        int compareKeyAt(int index, String key) {
+            int offset = entryOffset(index);
+            return compare(buf, offset + 4, buf.getInt(offset), key);
+        }
+
+        /**
+         * @return the CRC-32 of the keys of the table (as written in the trailer of the file).
+         */
+        int getKeyChecksum() {
+            return keyChecksum;
+        }
+
+        @Override
+        String keyAt(int index) {
+            int offset = entryOffset(index);
+            return decode(buf, offset + 4, buf.getInt(offset));
+        }
+
+        @Override
+        String valueAt(int index) {
+            int offset = entryOffset(index);
+            offset += 4 + buf.getInt(offset); // skip the key
+            return decode(buf, offset + 4, buf.getInt(offset));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package dict;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * A persistent dictionary made of a read-only {@link SortedTable} (the contents of the file when it was opened)
+ * and an in-memory overlay of the changes made since.
+ * <p>
+ * Subclasses decide how the table is loaded and how the merged contents are written back. If nothing changed,
+ * {@link #close()} doesn't write anything.
+ * Null definitions are not allowed.
+ */
+abstract class OverlayDictionary implements PersistentDictionary {
+    // Marks a word that was removed from the overlay (compared by identity, never returned to the user)
+    private static final String REMOVED = new String("<removed>");
+
+    SortedTable base = SortedTable.EMPTY;
+    TreeMap<String, String> overlay = new TreeMap<>();
+    private int size;
+    private boolean changed; // true if the table itself was changed since the dictionary was opened
+
+    /**
+     * Load the table from disk.
+     */
+    abstract SortedTable load() throws IOException;
+
+    /**
+     * Write the contents of the dictionary (e.g. from {@link #entries()}) back to disk.
+     */
+    abstract void write() throws IOException;
+
+    @Override
+    public void open() throws IOException {
+        base = load();
+        overlay = new TreeMap<>();
+        size = base.size();
+        changed = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isDirty()) { // nothing to write if nothing changed
+            write();
+        }
+    }
+
+    /**
+     * @return true if the dictionary was changed since it was opened.
+     */
+    boolean isDirty() {
+        return changed || !overlay.isEmpty();
+    }
+
+    /**
+     * Replace the table with one that already contains all the changes in the overlay, and empty the overlay.
+     */
+    void replaceBase(SortedTable merged) {
+        base = merged;
+        overlay = new TreeMap<>();
+        changed = true;
+    }
+
+    @Override
+    public String get(Object key) {
+        String value = overlay.get(key);
+        if (value != null) {
+            return isRemoved(value) ? null : value;
+        }
+        return getFromBase((String) key);
+    }
+
+    /**
+     * @return true if the overlay value marks a removed word.
+     */
+    static boolean isRemoved(String value) {
+        return value == REMOVED;
+    }
+
+    /**
+     * Look up a word that isn't in the overlay. Subclasses can override this to avoid searching the table.
+     */
+    String getFromBase(String key) {
+        int index = base.indexOf(key);
+        return index >= 0 ? base.valueAt(index) : null;
+    }
+
+    /**
+     * Like {@link #getFromBase}, for the changes (which look up the word only to update it), so that subclasses can
+     * tell them apart from lookups.
+     */
+    String findInBase(String key) {
+        return getFromBase(key);
+    }
+
+    /**
+     * Like {@link #get}, for the changes.
+     */
+    private String find(String key) {
+        String value = overlay.get(key);
+        if (value != null) {
+            return isRemoved(value) ? null : value;
+        }
+        return findInBase(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        if (value == null) {
+            throw new NullPointerException("null definitions are not supported");
+        }
+        String old = find(key);
+        overlay.put(key, value);
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String remove(Object key) {
+        String old = find((String) key);
+        if (old != null) {
+            if (findInBase((String) key) != null) {
+                overlay.put((String) key, REMOVED); // hide the word in the table
+            } else {
+                overlay.remove(key);
+            }
+            size--;
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        base = SortedTable.EMPTY;
+        overlay.clear();
+        size = 0;
+        changed = true;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        Ranges.check(from, to);
+        NavigableMap<String, String> changes = overlay;
+        if (from != null) {
+            changes = changes.tailMap(from, true);
+        }
+        if (to != null) {
+            changes = changes.headMap(to, false);
+        }
+        return new MergeIterator(base, from == null ? 0 : position(from), to == null ? base.size() : position(to),
+                changes.entrySet().iterator());
+    }
+
+    /**
+     * @return the index in the table of the first word that is not less than key.
+     */
+    private int position(String key) {
+        int index = base.indexOf(key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @return an iterator over the merged contents of the table and the overlay, in order.
+     */
+    Iterator<Map.Entry<String, String>> entries() {
+        return new MergeIterator(base, 0, base.size(), overlay.entrySet().iterator());
+    }
+
+    /**
+     * Merges a range of the table with (a part of) the overlay, skipping removed words.
+     */
+    static class MergeIterator implements Iterator<Map.Entry<String, String>> {
+        private final SortedTable table;
+        private final int end;
+        private final Iterator<Map.Entry<String, String>> changes;
+        private int index;
+        private Map.Entry<String, String> change; // the next change that wasn't merged yet
+        private Map.Entry<String, String> next;
+
+        MergeIterator(SortedTable table, int from, int to, Iterator<Map.Entry<String, String>> changes) {
+            this.table = table;
+            this.index = from;
+            this.end = to;
+            this.changes = changes;
+            this.change = changes.hasNext() ? changes.next() : null;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && (index < end || change != null)) {
+                int cmp = index >= end ? 1 : change == null ? -1 : table.compareKeyAt(index, change.getKey());
+
+                if (cmp < 0) { // the word in the table wasn't changed
+                    next = new AbstractMap.SimpleImmutableEntry<>(table.keyAt(index), table.valueAt(index));
+                    index++;
+                    continue;
+                }
+                if (cmp == 0) { // the change replaces the word in the table
+                    index++;
+                }
+                if (change.getValue() != REMOVED) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(change.getKey(), change.getValue());
+                }
+                change = changes.hasNext() ? changes.next() : null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> result = next;
+            advance();
+            return result;
+        }
+    }
+}
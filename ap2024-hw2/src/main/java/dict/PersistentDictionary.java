@@ -1,6 +1,8 @@
 package dict;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Stores a dictionary: a map of words to definitions.
@@ -102,4 +104,66 @@ public interface PersistentDictionary {
      * Removes all the mappings from this map.
      */
     void clear();
+
+
+
+    /*======= Batch changes  ======*/
+
+    /**
+     * Applies a batch of changes, with the same result as making them one by one in order.
+     * Implementations apply the batch more efficiently than separate calls where they can, and those that can be used
+     * by several threads apply it atomically: a concurrent {@link #close()} writes either all of the batch or none
+     * of it. As with any change, the batch is persistent after the next {@link #close()}.
+     *
+     * @param batch the changes to apply
+     */
+    default void apply(WriteBatch batch) {
+        for (Map.Entry<String, String> change : batch.changes().entrySet()) {
+            if (change.getValue() == null) {
+                remove(change.getKey());
+            } else {
+                put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copies all the definitions in a map to this dictionary (as with {@link #apply(WriteBatch)} of a batch of
+     * the definitions).
+     *
+     * @param words the definitions to copy
+     * @throws NullPointerException if a word or a definition is null
+     */
+    default void putAll(Map<? extends String, ? extends String> words) {
+        apply(new WriteBatch().putAll(words));
+    }
+
+    /*======= Range queries (the words are sorted in String order)  ======*/
+
+    /**
+     * Returns an iterator over the words from from (inclusive) to to (exclusive), in order, with their definitions.
+     * The words are read lazily as the iterator advances, so a query costs a search for its start plus the number
+     * of words read.
+     * The iterator doesn't support {@link Iterator#remove()}. As with the iterators of a map, the dictionary
+     * shouldn't be changed while iterating, unless the implementation says otherwise.
+     *
+     * @param from the first word of the range, or null to start at the first word
+     * @param to   the word after the end of the range (not included), or null to end at the last word
+     * @return an iterator over the entries in the range
+     * @throws IllegalArgumentException if from is greater than to
+     */
+    Iterator<Map.Entry<String, String>> range(String from, String to);
+
+    /**
+     * Returns an iterator over the words that start with prefix, in order, with their definitions.
+     * This is the range from prefix to the first string after all the strings that start with it (see
+     * {@link #range(String, String)}).
+     *
+     * @param prefix the prefix of the words
+     * @return an iterator over the entries whose words start with prefix
+     * @throws NullPointerException if prefix is null
+     */
+    default Iterator<Map.Entry<String, String>> prefixScan(String prefix) {
+        return range(prefix, Ranges.prefixEnd(prefix));
+    }
 }
@@ -0,0 +1,72 @@
+package dict;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Helpers for the range queries of {@link PersistentDictionary}.
+ */
+class Ranges {
+    private Ranges() {
+    }
+
+    /**
+     * @return the smallest string that is greater than every string starting with prefix, or null if there is
+     * none (the prefix is empty or made only of {@link Character#MAX_VALUE} characters).
+     */
+    static String prefixEnd(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    /**
+     * Check the bounds of a range.
+     *
+     * @throws IllegalArgumentException if from is greater than to
+     */
+    static void check(String from, String to) {
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            throw new IllegalArgumentException("Range start " + from + " is after its end " + to);
+        }
+    }
+
+    /**
+     * @return a read-only iterator over the entries of a sorted map from from (inclusive) to to (exclusive);
+     * a null bound is unbounded.
+     */
+    static Iterator<Map.Entry<String, String>> of(NavigableMap<String, String> map, String from, String to) {
+        check(from, to);
+        NavigableMap<String, String> view = map;
+        if (from != null) {
+            view = view.tailMap(from, true);
+        }
+        if (to != null) {
+            view = view.headMap(to, false);
+        }
+        return readOnly(view.entrySet().iterator());
+    }
+
+    /**
+     * @return an iterator that doesn't support {@link Iterator#remove()}.
+     */
+    static <T> Iterator<T> readOnly(Iterator<T> iterator) {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,271 @@
+package dict;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link InMemoryDictionary} that picks up changes made to its file by other processes without reparsing the
+ * whole file, e.g. for read replicas of a dictionary that is appended to elsewhere.
+ * <p>
+ * The dictionary remembers how far it read the file, and {@link #reload()} (or {@link #open()}, if there were no
+ * local changes) only reads the lines appended since. If the file was replaced or rewritten rather than appended to
+ * (its identity changed, it got shorter, or the bytes just before the offset that was read changed), or if the
+ * dictionary was changed locally (through {@link #put}, {@link #remove} or {@link #clear}) since it was loaded,
+ * the whole file is read again. When the whole file is read, so is a last line without a line break after it; if
+ * it was still being written, it is read again (with the rest of it) once it is complete.
+ * <p>
+ * After {@link #watch()}, a {@link WatchService} notices when the file changes, and the dictionary reloads on its
+ * next lookup (on the caller's thread, so the dictionary is still used by one thread at a time), unless it has local
+ * changes that weren't flushed yet.
+ */
+public class ReloadingDictionary extends InMemoryDictionary {
+    private static final long serialVersionUID = 1L;
+    static final int TAIL_SIZE = 4096; // the bytes before the offset that was read, to notice rewrites
+
+    // Note: no field initializers, since the superclass constructor calls open() before they would run
+    private Object fileKey; // the identity of the file that was read (null if unknown)
+    private long offset; // how far the file was read
+    private long length; // the size and modification time of the file when it was last checked
+    private long modified;
+    private long tailChecksum;
+    private boolean changed; // changed locally since the file was read
+    private long fullReloads;
+    private long incrementalReloads;
+
+    private transient volatile boolean stale; // set by the watcher when the file changes
+    private transient WatchService watcher;
+
+    public ReloadingDictionary(File dictFile) throws IOException {
+        super(dictFile);
+    }
+
+    /**
+     * Undo local changes and read changes made to the file, incrementally if possible.
+     */
+    @Override
+    public void open() throws IOException {
+        reload();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        changed = false;
+        // the file now holds exactly what's in memory
+        BasicFileAttributes attributes = Files.readAttributes(dictFile.toPath(), BasicFileAttributes.class);
+        remember(attributes.size(), attributes);
+    }
+
+    /**
+     * Read the changes made to the file since it was last read. Only appended lines are read, unless the file was
+     * rewritten or the dictionary was changed locally (see the class documentation).
+     *
+     * @return true if the dictionary was reloaded, false if the file didn't change.
+     * @throws IOException
+     */
+    public boolean reload() throws IOException {
+        stale = false;
+        if (!dictFile.exists()) {
+            if (!changed && fileKey == null && offset == 0 && isEmpty()) {
+                return false;
+            }
+            super.clear();
+            changed = false;
+            fileKey = null;
+            offset = length = modified = tailChecksum = 0;
+            fullReloads++;
+            return true;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(dictFile.toPath(), BasicFileAttributes.class);
+        boolean sameFile = Objects.equals(attributes.fileKey(), fileKey);
+        if (!changed && sameFile && attributes.size() == length
+                && attributes.lastModifiedTime().toMillis() == modified) {
+            return false;
+        }
+
+        if (changed || !sameFile || attributes.size() < offset || checksum(offset) != tailChecksum) {
+            super.clear(); // the file was rewritten (or we have to undo local changes), read all of it
+            // All of it, but remember only up to the last line break: a last line that was still being written (and
+            // anything appended while reading) is read again next time
+            remember(DictionaryLoader.loadAppended(dictFile, this, 0, true), attributes);
+            fullReloads++;
+        } else {
+            remember(DictionaryLoader.loadAppended(dictFile, this, offset), attributes);
+            incrementalReloads++;
+        }
+        changed = false;
+        return true;
+    }
+
+    /**
+     * Remember how far the file was read, and its state when it was read.
+     */
+    private void remember(long offset, BasicFileAttributes attributes) throws IOException {
+        this.offset = offset;
+        this.tailChecksum = checksum(offset);
+        this.fileKey = attributes.fileKey();
+        this.length = attributes.size();
+        this.modified = attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * @return the checksum of the (up to) {@link #TAIL_SIZE} bytes before offset.
+     */
+    private long checksum(long offset) throws IOException {
+        CRC32 crc = new CRC32();
+        if (offset == 0 || !dictFile.exists()) {
+            return crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(dictFile.toPath(), StandardOpenOption.READ)) {
+            long start = Math.max(0, offset - TAIL_SIZE);
+            ByteBuffer buf = ByteBuffer.allocate((int) (offset - start));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, start + buf.position()) < 0) {
+                    return ~crc.getValue(); // the file is shorter now, so it doesn't match
+                }
+            }
+            buf.flip();
+            crc.update(buf);
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Watch the file for changes: when it changes, the dictionary is reloaded on the next lookup.
+     *
+     * @throws IOException if the directory of the file can't be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        Path path = dictFile.getAbsoluteFile().toPath();
+        WatchService service = path.getFileSystem().newWatchService();
+        path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = service;
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || path.getFileName().equals(event.context())) {
+                            stale = true;
+                        }
+                    }
+                    if (!key.reset()) { // the directory is gone
+                        stale = true;
+                        return;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // stopped watching
+            }
+        }, "dictionary-watcher-" + dictFile.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching the file.
+     */
+    public synchronized void stopWatching() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Reload if the watcher noticed a change (but don't throw away local changes that weren't flushed).
+     */
+    private void reloadIfStale() {
+        if (stale && !changed) {
+            try {
+                reload();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of times the whole file was read.
+     */
+    public long getFullReloads() {
+        return fullReloads;
+    }
+
+    /**
+     * @return the number of times only the appended lines were read.
+     */
+    public long getIncrementalReloads() {
+        return incrementalReloads;
+    }
+
+    @Override
+    public String get(Object key) {
+        reloadIfStale();
+        return super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        reloadIfStale();
+        return super.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        reloadIfStale();
+        return super.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        reloadIfStale();
+        return super.range(from, to);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        changed = true;
+        return super.put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        changed = true;
+        return super.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> words) {
+        changed = true;
+        super.putAll(words);
+    }
+
+    @Override
+    public void apply(WriteBatch batch) {
+        changed = true;
+        super.apply(batch);
+    }
+
+    @Override
+    public void clear() {
+        changed = true;
+        super.clear();
+    }
+}
@@ -0,0 +1,278 @@
+package dict;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Implements a persistent dictionary that is split by the hash of the words into several {@link InMemoryDictionary}
+ * shards, each in its own file. The shards are loaded and flushed in parallel (on the common fork-join pool), and
+ * {@link #close()} only writes the shards that changed.
+ * <p>
+ * The dictionary file itself is a one-line manifest, <pre>sharded-dictionary N</pre>, and shard i is stored next to it
+ * in dictFile.shard<i>i</i> (in the {@link InMemoryDictionary} format). The number of shards is fixed when the
+ * dictionary is created: if the manifest exists, it is used instead of the number given to the constructor.
+ * The manifest is written after the shards when the dictionary is first flushed, so a dictionary whose manifest is
+ * missing is empty (and shard files left next to it are deleted when it is opened).
+ * If the dictionary file is a text dictionary rather than a manifest, its words are split into shards, and the file
+ * is replaced by a manifest on the first flush.
+ * <p>
+ * Each shard file is replaced atomically, but a crash in the middle of {@link #close()} may leave some shards
+ * flushed and others not.
+ */
+public class ShardedDictionary implements PersistentDictionary {
+    static final String MANIFEST = "sharded-dictionary";
+    static final String SHARD_SUFFIX = ".shard";
+
+    private final File dictFile;
+    private final int numShards;
+    private InMemoryDictionary[] shards;
+    private boolean[] dirty; // the shards changed since the last flush
+    private boolean manifestWritten;
+
+    /**
+     * @param dictFile  the dictionary (manifest) file
+     * @param numShards the number of shards, if the dictionary is new
+     */
+    public ShardedDictionary(File dictFile, int numShards) throws IOException {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive: " + numShards);
+        }
+        this.dictFile = dictFile;
+        this.numShards = readManifest(dictFile, numShards);
+        open();
+    }
+
+    /**
+     * @return the number of shards in the manifest, or defaultShards if the file isn't a manifest.
+     */
+    static int readManifest(File file, int defaultShards) throws IOException {
+        if (!isManifest(file)) {
+            return defaultShards;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String[] parts = reader.readLine().trim().split(" ");
+            try {
+                int shards = Integer.parseInt(parts[1]);
+                if (parts.length == 2 && shards > 0) {
+                    return shards;
+                }
+            } catch (RuntimeException e) {
+                // fall through
+            }
+            throw new IOException("Corrupt sharded dictionary manifest: " + file);
+        }
+    }
+
+    /**
+     * @return true if the file starts like a sharded dictionary manifest.
+     */
+    static boolean isManifest(File file) throws IOException {
+        if (!file.exists()) {
+            return false;
+        }
+        byte[] magic = MANIFEST.getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] start = new byte[magic.length];
+            return in.read(start) == start.length && Arrays.equals(start, magic);
+        }
+    }
+
+    private File shardFile(int shard) {
+        return new File(dictFile.getPath() + SHARD_SUFFIX + shard);
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    @Override
+    public void open() throws IOException {
+        InMemoryDictionary[] shards = new InMemoryDictionary[numShards];
+        dirty = new boolean[numShards];
+
+        if (isManifest(dictFile)) {
+            if (readManifest(dictFile, numShards) != numShards) {
+                throw new IOException("Number of shards changed: " + dictFile);
+            }
+            forEachShard(i -> shards[i] = new InMemoryDictionary(shardFile(i)));
+            manifestWritten = true;
+        } else { // no dictionary yet, or a text dictionary: any shard files are stale
+            forEachShard(i -> {
+                shardFile(i).delete();
+                shards[i] = new InMemoryDictionary(shardFile(i));
+            });
+            manifestWritten = false;
+            if (dictFile.exists()) {
+                TreeMap<String, String> words = new TreeMap<>();
+                DictionaryLoader.load(dictFile, words);
+                for (Map.Entry<String, String> entry : words.entrySet()) {
+                    shards[shard(entry.getKey())].put(entry.getKey(), entry.getValue());
+                }
+                Arrays.fill(dirty, true);
+            }
+        }
+        this.shards = shards;
+    }
+
+    @Override
+    public void close() throws IOException {
+        forEachShard(i -> {
+            if (dirty[i] || !manifestWritten) {
+                shards[i].close();
+                dirty[i] = false;
+            }
+        });
+        if (!manifestWritten) { // the shards are all there, so the dictionary can now be found
+            try (AtomicFileWriter writer = new AtomicFileWriter(dictFile)) {
+                writer.write(MANIFEST + " " + numShards + "\n");
+                writer.commit();
+            }
+            manifestWritten = true;
+        }
+    }
+
+    /**
+     * Something to do with a shard.
+     */
+    private interface ShardTask {
+        void run(int shard) throws IOException;
+    }
+
+    /**
+     * Run a task for each shard, in parallel.
+     */
+    private void forEachShard(ShardTask task) throws IOException {
+        try {
+            IntStream.range(0, numShards).parallel().forEach(i -> {
+                try {
+                    task.run(i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the shard of a word.
+     */
+    private int shard(Object key) {
+        int hash = key.hashCode(); // String.hashCode() is the same in every JVM, so the files stay valid
+        return Math.floorMod(hash ^ (hash >>> 16), numShards);
+    }
+
+    @Override
+    public String get(Object key) {
+        return shards[shard(key)].get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int shard = shard(key);
+        dirty[shard] = true;
+        return shards[shard].put(key, value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return shards[shard(key)].containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (InMemoryDictionary shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int shard = shard(key);
+        String old = shards[shard].remove(key);
+        if (old != null) {
+            dirty[shard] = true;
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < numShards; i++) {
+            if (!shards[i].isEmpty()) {
+                shards[i].clear();
+                dirty[i] = true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The ranges of all the shards are merged, so the words are returned in order.
+     */
+    @Override
+    public Iterator<Map.Entry<String, String>> range(String from, String to) {
+        List<Iterator<Map.Entry<String, String>>> ranges = new ArrayList<>(numShards);
+        for (InMemoryDictionary shard : shards) {
+            ranges.add(shard.range(from, to));
+        }
+        return new MergingIterator(ranges);
+    }
+
+    /**
+     * Merges sorted iterators over disjoint sets of words.
+     */
+    static class MergingIterator implements Iterator<Map.Entry<String, String>> {
+        // the next entry of each iterator that has one, by word
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        private static class Head implements Comparable<Head> {
+            final Iterator<Map.Entry<String, String>> rest;
+            Map.Entry<String, String> entry;
+
+            Head(Iterator<Map.Entry<String, String>> rest) {
+                this.rest = rest;
+                this.entry = rest.next();
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                return entry.getKey().compareTo(other.entry.getKey());
+            }
+        }
+
+        MergingIterator(List<Iterator<Map.Entry<String, String>>> iterators) {
+            for (Iterator<Map.Entry<String, String>> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> result = head.entry;
+            if (head.rest.hasNext()) {
+                head.entry = head.rest.next();
+                heads.add(head);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package dict;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sorted table that packs all the words and definitions into large byte slabs, either on the heap or off-heap
+ * (direct buffers), instead of keeping an object per entry.
+ * <p>
+ * Each entry is stored in a slab as:
+ * <pre>keyLength (varint), key (UTF-8), valueLength (varint), value (UTF-8)</pre>
+ * and the table keeps a single sorted array with the location of each entry (slab number in the high 32 bits,
+ * offset in the slab in the low 32 bits), so the per-entry overhead is 8 bytes plus the lengths.
+ */
+class SlabTable extends SortedTable {
+    static final int SLAB_SIZE = 1 << 20;
+
+    private final ByteBuffer[] slabs;
+    private final long[] entries;
+
+    private SlabTable(ByteBuffer[] slabs, long[] entries) {
+        this.slabs = slabs;
+        this.entries = entries;
+    }
+
+    @Override
+    int size() {
+        return entries.length;
+    }
+
+    @Override
+    int compareKeyAt(int index, String key) {
+        ByteBuffer slab = slab(index);
+        int offset = offset(index);
+        int length = readVarInt(slab, offset);
+        return compare(slab, offset + varIntSize(length), length, key);
+    }
+
+    @Override
+    String keyAt(int index) {
+        ByteBuffer slab = slab(index);
+        int offset = offset(index);
+        int length = readVarInt(slab, offset);
+        return decode(slab, offset + varIntSize(length), length);
+    }
+
+    @Override
+    String valueAt(int index) {
+        ByteBuffer slab = slab(index);
+        int offset = valueOffset(slab, offset(index));
+        int length = readVarInt(slab, offset);
+        return decode(slab, offset + varIntSize(length), length);
+    }
+
+    /**
+     * @return the slab holding the entry at index.
+     */
+    ByteBuffer slab(int index) {
+        return slabs[(int) (entries[index] >>> 32)];
+    }
+
+    /**
+     * @return the offset of the entry at index in its slab.
+     */
+    int offset(int index) {
+        return (int) entries[index];
+    }
+
+    /**
+     * @return the offset of the value length of an entry, given the offset of the entry.
+     */
+    static int valueOffset(ByteBuffer slab, int offset) {
+        int keyLength = readVarInt(slab, offset);
+        return offset + varIntSize(keyLength) + keyLength;
+    }
+
+    /**
+     * @return the offset right after an entry, given the offset of the entry.
+     */
+    static int endOffset(ByteBuffer slab, int offset) {
+        int valueOffset = valueOffset(slab, offset);
+        int valueLength = readVarInt(slab, valueOffset);
+        return valueOffset + varIntSize(valueLength) + valueLength;
+    }
+
+    static int readVarInt(ByteBuffer buf, int offset) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buf.get(offset++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static void putVarInt(ByteBuffer buf, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Builds a table from entries. If the entries are added in sorted order (as they are in files written by
+     * the dictionaries), the table is built without sorting; otherwise it is sorted when built. If a word is added
+     * more than once, the last definition wins.
+     */
+    static class Builder {
+        private final boolean direct;
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private ByteBuffer current;
+        private long[] entries = new long[1024];
+        private int count;
+        private boolean sorted = true;
+
+        /**
+         * @param direct if true, allocate the slabs off-heap.
+         */
+        Builder(boolean direct) {
+            this.direct = direct;
+        }
+
+        /**
+         * Add an entry whose word and definition are (UTF-8) ranges of byte arrays.
+         */
+        void add(byte[] key, int keyOffset, int keyLength, byte[] value, int valueOffset, int valueLength) {
+            int size = varIntSize(keyLength) + keyLength + varIntSize(valueLength) + valueLength;
+            ByteBuffer slab = reserve(size);
+            int offset = slab.position();
+
+            putVarInt(slab, keyLength);
+            slab.put(key, keyOffset, keyLength);
+            putVarInt(slab, valueLength);
+            slab.put(value, valueOffset, valueLength);
+            append(offset);
+        }
+
+        /**
+         * Add a copy of an entry from another table, without decoding it.
+         */
+        void add(SlabTable table, int index) {
+            ByteBuffer from = table.slab(index);
+            int offset = table.offset(index);
+            int size = endOffset(from, offset) - offset;
+            ByteBuffer slab = reserve(size);
+            int newOffset = slab.position();
+
+            ByteBuffer view = from.duplicate();
+            view.limit(offset + size).position(offset);
+            slab.put(view);
+            append(newOffset);
+        }
+
+        /**
+         * @return a slab with at least size bytes of free space, whose position is where the entry should go.
+         */
+        private ByteBuffer reserve(int size) {
+            if (current == null || current.remaining() < size) {
+                current = allocate(Math.max(size, SLAB_SIZE));
+                slabs.add(current);
+            }
+            return current;
+        }
+
+        private ByteBuffer allocate(int size) {
+            return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        }
+
+        private void append(int offset) {
+            long entry = ((long) (slabs.size() - 1) << 32) | offset;
+
+            if (count > 0 && sorted) {
+                long previous = entries[count - 1];
+                int cmp = compareKeys(previous, entry);
+                if (cmp == 0) { // the same word again, the new definition replaces the old one
+                    entries[count - 1] = entry;
+                    return;
+                }
+                sorted = cmp < 0;
+            }
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+            }
+            entries[count++] = entry;
+        }
+
+        private int compareKeys(long a, long b) {
+            ByteBuffer slabA = slabs.get((int) (a >>> 32));
+            ByteBuffer slabB = slabs.get((int) (b >>> 32));
+            int offsetA = (int) a;
+            int offsetB = (int) b;
+            int lengthA = readVarInt(slabA, offsetA);
+            int lengthB = readVarInt(slabB, offsetB);
+            return compare(slabA, offsetA + varIntSize(lengthA), lengthA, slabB, offsetB + varIntSize(lengthB), lengthB);
+        }
+
+        SlabTable build() {
+            long[] result = Arrays.copyOf(entries, count);
+            ByteBuffer[] slabArray = slabs.toArray(new ByteBuffer[0]);
+
+            if (!sorted) {
+                result = sort(slabArray, result);
+            }
+            entries = null;
+            return new SlabTable(slabArray, result);
+        }
+
+        /**
+         * Sort entries that were added out of order (a stable sort, so the last definition of a word is kept).
+         */
+        private static long[] sort(ByteBuffer[] slabs, long[] entries) {
+            SlabTable unsorted = new SlabTable(slabs, entries);
+            String[] keys = new String[entries.length];
+            Integer[] order = new Integer[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                keys[i] = unsorted.keyAt(i);
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+
+            long[] sorted = new long[entries.length];
+            int count = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (count > 0 && keys[order[i]].equals(keys[order[i - 1]])) {
+                    count--; // replaced by a later definition
+                }
+                sorted[count++] = entries[order[i]];
+            }
+            return Arrays.copyOf(sorted, count);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package dict;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only table of (word, definition) pairs sorted by word, where each word and definition
+ * is stored as UTF-8 bytes somewhere in a {@link ByteBuffer}.
+ * Lookups are done by binary search, comparing the stored bytes to the searched word without decoding them.
+ */
+abstract class SortedTable {
+    static final SortedTable EMPTY = new SortedTable() {
+        @Override
+        int size() {
+            return 0;
+        }
+
+        @Override
+        int compareKeyAt(int index, String key) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        String keyAt(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        String valueAt(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+    };
+
+    /**
+     * @return the number of entries in the table
+     */
+    abstract int size();
+
+    /**
+     * Compare the word at the given index to a key, in the order of {@link String#compareTo(String)}.
+     *
+     * @return a negative number, zero or a positive number if the word at index is less than, equal to or greater
+     * than key.
+     */
+    abstract int compareKeyAt(int index, String key);
+
+    abstract String keyAt(int index);
+
+    abstract String valueAt(int index);
+
+    /**
+     * Find a key in the table.
+     *
+     * @return the index of the key, if it is in the table; otherwise, (-(insertion point) - 1), as in
+     * {@link java.util.Arrays#binarySearch(int[], int)}.
+     */
+    int indexOf(String key) {
+        int low = 0;
+        int high = size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKeyAt(mid, key);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compare UTF-8 bytes to a string, in the order of {@link String#compareTo(String)} (i.e. by UTF-16 code units).
+     * The bytes are decoded on the fly, so nothing is allocated.
+     *
+     * @param buf    the buffer holding the bytes (read with absolute gets, its position is not changed)
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param key    the string to compare to
+     * @return a negative number, zero or a positive number if the bytes are less than, equal to or greater than key.
+     */
+    static int compare(ByteBuffer buf, int offset, int length, String key) {
+        int end = offset + length;
+        int pos = offset;
+        int i = 0; // index in key
+        int keyLength = key.length();
+
+        while (pos < end) {
+            int b = buf.get(pos) & 0xff;
+            int codePoint;
+
+            if (b < 0x80) { // 1 byte
+                codePoint = b;
+                pos += 1;
+            } else if (b < 0xe0) { // 2 bytes
+                codePoint = ((b & 0x1f) << 6) | (buf.get(pos + 1) & 0x3f);
+                pos += 2;
+            } else if (b < 0xf0) { // 3 bytes
+                codePoint = ((b & 0x0f) << 12) | ((buf.get(pos + 1) & 0x3f) << 6) | (buf.get(pos + 2) & 0x3f);
+                pos += 3;
+            } else { // 4 bytes, becomes a surrogate pair
+                codePoint = ((b & 0x07) << 18) | ((buf.get(pos + 1) & 0x3f) << 12)
+                        | ((buf.get(pos + 2) & 0x3f) << 6) | (buf.get(pos + 3) & 0x3f);
+                pos += 4;
+            }
+
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (i == keyLength) {
+                    return 1;
+                }
+                int diff = codePoint - key.charAt(i++);
+                if (diff != 0) {
+                    return diff;
+                }
+            } else {
+                for (char c : Character.toChars(codePoint)) {
+                    if (i == keyLength) {
+                        return 1;
+                    }
+                    int diff = c - key.charAt(i++);
+                    if (diff != 0) {
+                        return diff;
+                    }
+                }
+            }
+        }
+        return i == keyLength ? 0 : -1;
+    }
+
+    /**
+     * Compare two UTF-8 byte sequences, in the order of {@link String#compareTo(String)}.
+     * UTF-8 bytes sort in code point order, which only differs from the order of UTF-16 code units when comparing
+     * characters from U+E000 and up, so only those are decoded.
+     */
+    static int compare(ByteBuffer a, int aOffset, int aLength, ByteBuffer b, int bOffset, int bLength) {
+        int length = Math.min(aLength, bLength);
+
+        for (int i = 0; i < length; i++) {
+            int x = a.get(aOffset + i) & 0xff;
+            int y = b.get(bOffset + i) & 0xff;
+            if (x != y) {
+                if (x >= 0xee || y >= 0xee) { // U+E000 and up, or a surrogate pair
+                    return compare(a, aOffset, aLength, decode(b, bOffset, bLength));
+                }
+                return x - y;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Decode UTF-8 bytes from a buffer (without changing its position).
+     */
+    static String decode(ByteBuffer buf, int offset, int length) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buf.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,168 @@
+package dict;
+
+/**
+ * A pool of canonical strings, used to share identical definitions between the entries of dictionaries (and between
+ * dictionaries that use the same pool) instead of keeping a copy of each.
+ * <p>
+ * The pool is an open-addressing hash table of strings (a single array slot per string, rather than a node per
+ * entry as in a {@link java.util.HashMap}), split into segments with their own locks so that the chunks of a file
+ * can be loaded in parallel. The pool is bounded: when a segment is full, it is emptied before the next string is
+ * added (the dictionaries keep their strings, and copies read later are shared among themselves), so a pool that
+ * outlives many reloads doesn't keep every string it ever saw.
+ * <p>
+ * The pool counts the strings it was asked for that it already had, and estimates the heap they would have taken
+ * (on a 64-bit JVM with compressed references and compact strings).
+ */
+public class StringPool {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public StringPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the most strings to keep (give or take a segment's share of them)
+     */
+    public StringPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        int limit = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(limit);
+        }
+    }
+
+    /**
+     * @return the string in the pool that is equal to s, adding s if there is none (null for null).
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        int hash = s.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)].intern(s, hash >>> SEGMENT_BITS);
+    }
+
+    /**
+     * @return the number of distinct strings in the pool.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of times a string that was already in the pool was asked for.
+     */
+    public long getDuplicates() {
+        long duplicates = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                duplicates += segment.duplicates;
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * @return an estimate of the heap (in bytes) the duplicates would have taken, if they weren't shared.
+     */
+    public long getBytesSaved() {
+        long saved = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                saved += segment.bytesSaved;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Remove all the strings from the pool (the dictionaries that use them keep them).
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.table = new String[Segment.INITIAL_CAPACITY];
+                segment.size = 0;
+            }
+        }
+    }
+
+    /**
+     * @return an estimate of the heap taken by a string: the String object and its byte array.
+     */
+    static long heapSize(String s) {
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) {
+            latin1 = s.charAt(i) < 256;
+        }
+        long array = 16 + (long) s.length() * (latin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7L);
+    }
+
+    private static class Segment {
+        static final int INITIAL_CAPACITY = 16;
+
+        final int limit; // the most strings in the segment
+        String[] table = new String[INITIAL_CAPACITY];
+        int size;
+        long duplicates;
+        long bytesSaved;
+
+        Segment(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized String intern(String s, int hash) {
+            int mask = table.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) { // linear probing
+                String existing = table[i];
+                if (existing == null) {
+                    if (size == limit) { // full: start over
+                        table = new String[INITIAL_CAPACITY];
+                        size = 0;
+                        return intern(s, hash);
+                    }
+                    table[i] = s;
+                    if (++size * 4 > table.length * 3) {
+                        resize();
+                    }
+                    return s;
+                }
+                if (existing.equals(s)) {
+                    duplicates++;
+                    bytesSaved += heapSize(s);
+                    return existing;
+                }
+            }
+        }
+
+        private void resize() {
+            String[] old = table;
+            table = new String[old.length * 2];
+            int mask = table.length - 1;
+            for (String s : old) {
+                if (s != null) {
+                    int hash = s.hashCode();
+                    int i = ((hash ^ (hash >>> 16)) >>> SEGMENT_BITS) & mask;
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = s;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package dict;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A group of changes to apply to a {@link PersistentDictionary} at once, with
+ * {@link PersistentDictionary#apply(WriteBatch)}.
+ * <p>
+ * Only the last change to each word counts, so applying a batch has the same result as making its changes one by
+ * one, in order. The changes are kept sorted by word, which lets the dictionaries apply them in a single pass.
+ * Arguments are checked when the changes are added, so a batch that was built can always be applied.
+ */
+public class WriteBatch {
+    private final TreeMap<String, String> changes = new TreeMap<>(); // null means removed
+    private int removals;
+
+    /**
+     * Add a definition to the batch.
+     *
+     * @return this batch
+     * @throws NullPointerException if the word or the definition is null
+     */
+    public WriteBatch put(String key, String value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("null words and definitions are not supported");
+        }
+        if (isRemoval(key)) {
+            removals--;
+        }
+        changes.put(key, value);
+        return this;
+    }
+
+    /**
+     * Add the removal of a word to the batch.
+     *
+     * @return this batch
+     * @throws NullPointerException if the word is null
+     */
+    public WriteBatch remove(String key) {
+        if (key == null) {
+            throw new NullPointerException("null words are not supported");
+        }
+        if (!isRemoval(key)) {
+            removals++;
+        }
+        changes.put(key, null);
+        return this;
+    }
+
+    /**
+     * Add all the definitions in a map to the batch.
+     *
+     * @return this batch
+     */
+    public WriteBatch putAll(Map<? extends String, ? extends String> words) {
+        for (Map.Entry<? extends String, ? extends String> entry : words.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * @return true if the batch removes the word (so far).
+     */
+    private boolean isRemoval(String key) {
+        return changes.get(key) == null && changes.containsKey(key);
+    }
+
+    /**
+     * @return the number of words changed by the batch.
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Remove all the changes from the batch, so it can be reused.
+     */
+    public void clear() {
+        changes.clear();
+        removals = 0;
+    }
+
+    /**
+     * @return true if the batch removes any words.
+     */
+    boolean hasRemovals() {
+        return removals > 0;
+    }
+
+    /**
+     * @return the number of words the batch removes.
+     */
+    int removals() {
+        return removals;
+    }
+
+    /**
+     * @return the changes, sorted by word (a null definition means the word is removed).
+     */
+    SortedMap<String, String> changes() {
+        return changes;
+    }
+}
@@ -0,0 +1,98 @@
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads an InputStream in large blocks into a reusable buffer, for scanning large inputs without a call to
+ * {@link InputStream#read()} and a boxed byte per byte (as {@link Streams#getQuoted(InputStream)} does).
+ * <p>
+ * The results are views of the reader's buffer, so they are only valid until the next call to the reader; copy them
+ * if they are needed for longer. The buffer grows to hold the longest result, so reading doesn't allocate once it
+ * has. The reader reads ahead, so the stream shouldn't be read directly once it is wrapped.
+ */
+public class ByteBlockReader implements Closeable {
+    static final int BUFFER_SIZE = 1 << 16;
+    private static final byte QUOTE = '"';
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos; // the bytes in buf[pos, limit) were read from the stream but not returned yet
+    private int limit;
+
+    public ByteBlockReader(InputStream in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    ByteBlockReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Read until a quote character (") is found, then read until another quote character is found and return the
+     * bytes in between the two quotes (like {@link Streams#getQuoted(InputStream)}).
+     *
+     * @return the bytes between the quotes (between the position and the limit of the buffer), the bytes from the
+     * quote to the end of the stream if there is only one, or null if no quote was found.
+     */
+    public ByteBuffer getQuoted() throws IOException {
+        int quote;
+        while ((quote = ByteScan.indexOf(buf, pos, limit, QUOTE)) < 0) {
+            pos = limit; // nothing before the quote is kept
+            if (!fill()) {
+                return null;
+            }
+        }
+        pos = quote + 1;
+
+        int scanned = 0; // the bytes after pos that are known not to be quotes (pos moves when the buffer is compacted)
+        int end;
+        while ((end = ByteScan.indexOf(buf, pos + scanned, limit, QUOTE)) < 0) {
+            scanned = limit - pos;
+            if (!fill()) { // no closing quote
+                ByteBuffer result = ByteBuffer.wrap(buf, pos, limit - pos);
+                pos = limit;
+                return result;
+            }
+        }
+        ByteBuffer result = ByteBuffer.wrap(buf, pos, end - pos);
+        pos = end + 1;
+        return result;
+    }
+
+    /**
+     * Read more bytes after the ones that weren't returned yet, moving them to the start of the buffer (or growing it)
+     * if there is no room after them.
+     *
+     * @return false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (pos == limit) {
+            pos = limit = 0;
+        } else if (limit == buf.length) {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            } else {
+                byte[] grown = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, grown, 0, limit);
+                buf = grown;
+            }
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
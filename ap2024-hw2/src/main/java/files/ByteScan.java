@@ -0,0 +1,41 @@
+package files;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Searches byte arrays eight bytes at a time: each long read from the array is checked for the byte with a few
+ * arithmetic operations (SWAR, "SIMD within a register") instead of a comparison and branch per byte.
+ */
+final class ByteScan {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private ByteScan() {
+    }
+
+    /**
+     * @return the index of the first occurrence of b in bytes[from, to), or -1 if there is none.
+     */
+    static int indexOf(byte[] bytes, int from, int to, byte b) {
+        long pattern = (b & 0xFFL) * ONES;
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i) ^ pattern; // the bytes equal to b are now zero
+            // The high bit of each zero byte is set (bytes above the first zero may be set too, but the first is exact)
+            long zeros = (word - ONES) & ~word & HIGHS;
+            if (zeros != 0) {
+                return i + (Long.numberOfTrailingZeros(zeros) >>> 3); // little-endian: the lowest byte comes first
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
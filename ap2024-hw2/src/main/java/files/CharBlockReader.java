@@ -0,0 +1,139 @@
+package files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Reads a Reader in large blocks into a reusable buffer, for scanning large inputs without a call to
+ * {@link Reader#read()} per character (as {@link Streams#readUntil(Reader, String)} does).
+ * <p>
+ * The results are views of the reader's buffer, so they are only valid until the next call to the reader; copy them
+ * (e.g. with toString()) if they are needed for longer. The buffer grows to hold the longest result, so reading
+ * doesn't allocate once it has. The reader reads ahead, so the underlying Reader shouldn't be read directly once it
+ * is wrapped.
+ */
+public class CharBlockReader implements Closeable {
+    static final int BUFFER_SIZE = 1 << 15;
+
+    private final Reader in;
+    private char[] buf;
+    private int pos; // the chars in buf[pos, limit) were read but not returned yet
+    private int limit;
+    private String lastEndMark; // the matcher of the last end mark that was read until
+    private StreamMatcher lastMatcher;
+    private int lastMatch = -1;
+
+    public CharBlockReader(Reader in) {
+        this(in, BUFFER_SIZE);
+    }
+
+    CharBlockReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buf = new char[bufferSize];
+    }
+
+    /**
+     * Read until a specific string is read (like {@link Streams#readUntil(Reader, String)}). The end mark is read
+     * too, but not returned.
+     *
+     * @param endMark the string indicating to stop reading.
+     * @return the characters read up to (not including) the endMark, or up to the end of the stream if the endMark
+     * is not found.
+     */
+    public CharSequence readUntil(String endMark) throws IOException {
+        if (endMark.isEmpty()) {
+            lastMatch = -1;
+            return CharBuffer.wrap(buf, pos, 0);
+        }
+        if (!endMark.equals(lastEndMark)) { // usually the same mark is used again and again
+            lastMatcher = new StreamMatcher(endMark);
+            lastEndMark = endMark;
+        }
+        return readUntil(lastMatcher);
+    }
+
+    /**
+     * Read until any of the patterns of a matcher is read. The end mark that was found is read too, but not
+     * returned, and {@link #getLastMatch()} tells which one it was. If several end marks end at the same place,
+     * the longest one is used.
+     *
+     * @param endMarks the strings indicating to stop reading.
+     * @return the characters read up to (not including) the first endMark, or up to the end of the stream if no
+     * endMark is found.
+     */
+    public CharSequence readUntil(StreamMatcher endMarks) throws IOException {
+        int state = 0;
+        int i = pos;
+        while (true) {
+            for (; i < limit; i++) {
+                state = endMarks.transition(state, buf[i]);
+                int match = endMarks.match(state);
+                if (match >= 0) {
+                    int end = i + 1 - endMarks.getPattern(match).length();
+                    CharBuffer result = CharBuffer.wrap(buf, pos, end - pos);
+                    pos = i + 1;
+                    lastMatch = match;
+                    return result;
+                }
+            }
+            int scanned = i - pos; // the state goes on from here (pos moves when the buffer is compacted)
+            if (!fill()) { // no endMark
+                CharBuffer result = CharBuffer.wrap(buf, pos, limit - pos);
+                pos = limit;
+                lastMatch = -1;
+                return result;
+            }
+            i = pos + scanned;
+        }
+    }
+
+    /**
+     * @return the index (in the matcher) of the end mark found by the last call to readUntil, or -1 if it read to the
+     * end of the stream.
+     */
+    public int getLastMatch() {
+        return lastMatch;
+    }
+
+    /**
+     * @return true if everything was read.
+     */
+    public boolean atEnd() throws IOException {
+        return pos == limit && !fill();
+    }
+
+    /**
+     * Read more chars after the ones that weren't returned yet, moving them to the start of the buffer (or growing it)
+     * if there is no room after them.
+     *
+     * @return false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (pos == limit) {
+            pos = limit = 0;
+        } else if (limit == buf.length) {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            } else {
+                char[] grown = new char[buf.length * 2];
+                System.arraycopy(buf, 0, grown, 0, limit);
+                buf = grown;
+            }
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,574 @@
+package files;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts a file of fixed-width records in place, using a bounded amount of memory no matter how large the file is.
+ * The records are compared as unsigned big-endian numbers (that is, byte by byte, as unsigned bytes).
+ * <p>
+ * A file that fits in the memory budget is read, sorted in memory and written back. Larger files are sorted in one
+ * of two ways (see {@link Mode}), going back and forth between the file and a temporary file, and copied back into
+ * the file if they end up in the temporary file.
+ * <p>
+ * Bytes at the end of the file that don't make up a whole record are left where they are.
+ */
+public class ExternalSort {
+    static final int MIN_BUFFER = 1 << 13; // the smallest buffer for a run being merged (unless memory is very tight)
+    private static final int MAX_PACKED = 7; // records up to this size are sorted as longs
+    private static final int MIN_SORT_PART = 1 << 13; // the fewest records a parallel sort sorts on a single thread
+    private static final int RADIX = 256; // the buckets of a radix sort pass, one for each value of a byte
+
+    /**
+     * How files that don't fit in memory are sorted.
+     */
+    public enum Mode {
+        /**
+         * Sort runs that fit in memory, then merge them. The file is read and written about
+         * 1 + log<sub>k</sub>(runs) times, where k is the number of runs that can be merged at once (which grows with
+         * the memory budget).
+         */
+        MERGE,
+        /**
+         * Least-significant-digit radix sort, without comparisons: the records are counted by each of their bytes
+         * in one pass, then distributed by each byte in turn, from the last to the first, into buckets at the
+         * offsets the counts give (in the other file). Each distribution keeps the order of the previous one, so
+         * the file is read and written once per byte of a record (skipping bytes that are the same in every record)
+         * no matter how large it is. The memory budget must leave room for a buffer per bucket.
+         */
+        RADIX,
+        /**
+         * Like {@link #MERGE}, on several threads: each run is read into memory and sorted by a parallel merge sort
+         * on the pool (which needs a little more memory per record, so the runs are a little shorter). Then, in each
+         * merge pass that has more than one group of runs to merge,
+         * the groups are merged in parallel (sharing the budget, so each merges fewer runs at once); passes with a
+         * single group, like the last one, merge as many runs at once as {@link #MERGE} does, on a single thread.
+         * With a pool of a single thread, this is the same as {@link #MERGE}.
+         */
+        PARALLEL
+    }
+
+    private final int recordSize;
+    private final int memory;
+    private final Mode mode;
+    private final ForkJoinPool pool; // the threads of the PARALLEL mode
+
+    /**
+     * @param recordSize the size of a record, in bytes
+     * @param memory     the most memory to use for records (in bytes), including the buffers and the arrays used to
+     *                   sort them
+     */
+    public ExternalSort(int recordSize, int memory) {
+        this(recordSize, memory, Mode.MERGE);
+    }
+
+    /**
+     * @param recordSize the size of a record, in bytes
+     * @param memory     the most memory to use for records (in bytes), including the buffers and the arrays used to
+     *                   sort them
+     * @param mode       how to sort files that don't fit in memory
+     */
+    public ExternalSort(int recordSize, int memory, Mode mode) {
+        this(recordSize, memory, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param recordSize the size of a record, in bytes
+     * @param memory     the most memory to use for records (in bytes), including the buffers and the arrays used to
+     *                   sort them
+     * @param mode       how to sort files that don't fit in memory
+     * @param pool       the threads to sort with in {@link Mode#PARALLEL} mode
+     */
+    public ExternalSort(int recordSize, int memory, Mode mode, ForkJoinPool pool) {
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("Record size must be positive: " + recordSize);
+        }
+        if (memory < 3 * (recordSize + Long.BYTES) || (mode == Mode.RADIX && memory < (RADIX + 1) * recordSize)) {
+            throw new IllegalArgumentException("Not enough memory to sort records of " + recordSize + " bytes: "
+                    + memory);
+        }
+        this.recordSize = recordSize;
+        this.memory = memory;
+        this.mode = mode;
+        this.pool = pool;
+    }
+
+    public void sort(RandomAccessFile file) throws IOException {
+        sort(file.getChannel());
+    }
+
+    /**
+     * Sort the records of a file in place (the position of the channel is changed).
+     */
+    public void sort(FileChannel file) throws IOException {
+        long length = file.size() / recordSize * recordSize;
+        int threads = mode == Mode.PARALLEL ? pool.getParallelism() : 1;
+        // The memory for a record while it is sorted: the record and a long, or an array of its own and a reference;
+        // a parallel sort needs another long or reference to merge into
+        int perRecord = (recordSize <= MAX_PACKED ? recordSize + Long.BYTES : recordSize + 24)
+                + (threads > 1 ? Long.BYTES : 0);
+        long runLength = (long) (memory / perRecord) * recordSize;
+        if (mode == Mode.RADIX && runLength < length) {
+            radixSort(file, length);
+            return;
+        }
+
+        byte[] block = new byte[(int) Math.min(runLength, length)];
+        for (long start = 0; start < length; start += runLength) {
+            int n = (int) Math.min(runLength, length - start);
+            readFully(file, ByteBuffer.wrap(block, 0, n), start);
+            sortRecords(block, n, threads > 1);
+            writeFully(file, ByteBuffer.wrap(block, 0, n), start);
+        }
+        if (runLength >= length) {
+            return;
+        }
+
+        try (FileChannel temp = openTemp()) {
+            FileChannel source = file;
+            FileChannel target = temp;
+            while (runLength < length) {
+                long runs = (length + runLength - 1) / runLength;
+                // Merge groups of runs, at most one per thread at once, each with its share of the memory. With
+                // fewer groups than threads, fewer share the memory, so each can merge more runs (and there may
+                // be fewer groups still)
+                int concurrent = threads;
+                int fanIn;
+                long groups;
+                while (true) {
+                    fanIn = (int) Math.min(Math.max(2, memory / concurrent / MIN_BUFFER - 1), runs);
+                    groups = (runs + fanIn - 1) / fanIn;
+                    if (groups >= concurrent) {
+                        break;
+                    }
+                    concurrent = (int) groups;
+                }
+                int bufferSize = Math.max(1, memory / concurrent / (fanIn + 1) / recordSize) * recordSize;
+
+                List<SortTask> merges = new ArrayList<>();
+                long groupLength = runLength * fanIn;
+                for (long start = 0; start < length; start += groupLength) {
+                    long groupStart = start;
+                    long mergeLength = Math.min(groupLength, length - start);
+                    long mergeRun = runLength;
+                    FileChannel from = source;
+                    FileChannel to = target;
+                    merges.add(() -> merge(from, to, groupStart, mergeRun, mergeLength, bufferSize));
+                }
+                runAll(merges, concurrent);
+                runLength = groupLength;
+                FileChannel merged = target;
+                target = source;
+                source = merged;
+            }
+            if (source == temp) {
+                copyBack(temp, file, length);
+            }
+        }
+    }
+
+    /**
+     * Something to do with a part of the file.
+     */
+    private interface SortTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * Run tasks on the pool, at most concurrent at a time (in the order they are given, in waves).
+     */
+    private void runAll(List<SortTask> tasks, int concurrent) throws IOException {
+        if (concurrent <= 1) {
+            for (SortTask task : tasks) {
+                task.run();
+            }
+            return;
+        }
+        for (int first = 0; first < tasks.size(); first += concurrent) {
+            List<ForkJoinTask<?>> wave = new ArrayList<>();
+            for (SortTask task : tasks.subList(first, Math.min(first + concurrent, tasks.size()))) {
+                wave.add(pool.submit(() -> {
+                    try {
+                        task.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            IOException failure = null;
+            for (ForkJoinTask<?> task : wave) { // wait for all of them, so none is left running after a failure
+                try {
+                    task.join();
+                } catch (UncheckedIOException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * @return a temporary file, which is deleted when it is closed.
+     */
+    private static FileChannel openTemp() throws IOException {
+        Path tempFile = Files.createTempFile("sort", ".tmp");
+        return FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Copy the sorted records from the temporary file to the file.
+     */
+    private static void copyBack(FileChannel temp, FileChannel file, long length) throws IOException {
+        file.position(0);
+        for (long done = 0; done < length; ) {
+            done += temp.transferTo(done, length - done, file);
+        }
+    }
+
+    /**
+     * Sort the first length bytes of the file with an LSD radix sort (see {@link Mode#RADIX}).
+     */
+    private void radixSort(FileChannel file, long length) throws IOException {
+        int blockSize = memory / (RADIX + 1) / recordSize * recordSize; // the input block and a buffer per bucket
+        ByteBuffer in = ByteBuffer.allocate(blockSize);
+
+        // The counts don't change from pass to pass (only the order does), so count all the bytes at once
+        long[][] counts = new long[recordSize][RADIX];
+        for (long position = 0; position < length; ) {
+            int n = readBlock(file, in, position, length);
+            byte[] block = in.array();
+            for (int i = 0; i < n; i += recordSize) {
+                for (int digit = 0; digit < recordSize; digit++) {
+                    counts[digit][block[i + digit] & 0xFF]++;
+                }
+            }
+            position += n;
+        }
+
+        ByteBuffer[] buckets = new ByteBuffer[RADIX];
+        for (int b = 0; b < RADIX; b++) {
+            buckets[b] = ByteBuffer.allocate(blockSize);
+        }
+        long[] next = new long[RADIX]; // where the next records of each bucket go in the target
+        try (FileChannel temp = openTemp()) {
+            FileChannel source = file;
+            FileChannel target = temp;
+            for (int digit = recordSize - 1; digit >= 0; digit--) {
+                long offset = 0;
+                for (int b = 0; b < RADIX; b++) {
+                    next[b] = offset;
+                    offset += counts[digit][b] * recordSize;
+                }
+                if (isConstant(counts[digit], length / recordSize)) { // the pass wouldn't change the order
+                    continue;
+                }
+
+                for (long position = 0; position < length; ) {
+                    int n = readBlock(source, in, position, length);
+                    byte[] block = in.array();
+                    for (int i = 0; i < n; i += recordSize) {
+                        int b = block[i + digit] & 0xFF;
+                        ByteBuffer bucket = buckets[b];
+                        if (!bucket.hasRemaining()) {
+                            next[b] += flush(target, bucket, next[b]);
+                        }
+                        bucket.put(block, i, recordSize);
+                    }
+                    position += n;
+                }
+                for (int b = 0; b < RADIX; b++) {
+                    next[b] += flush(target, buckets[b], next[b]);
+                }
+
+                FileChannel distributed = target;
+                target = source;
+                source = distributed;
+            }
+            if (source == temp) {
+                copyBack(temp, file, length);
+            }
+        }
+    }
+
+    /**
+     * @return true if all the records are in a single bucket.
+     */
+    private static boolean isConstant(long[] counts, long records) {
+        for (long count : counts) {
+            if (count != 0) {
+                return count == records;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the next block of records (the block starting at position, up to length) into the buffer.
+     *
+     * @return the number of bytes read.
+     */
+    private static int readBlock(FileChannel channel, ByteBuffer buf, long position, long length)
+            throws IOException {
+        buf.clear();
+        buf.limit((int) Math.min(buf.capacity(), length - position));
+        return readFully(channel, buf, position);
+    }
+
+    /**
+     * Write the contents of a bucket to position in the channel, and empty it.
+     *
+     * @return the number of bytes written.
+     */
+    private static int flush(FileChannel channel, ByteBuffer bucket, long position) throws IOException {
+        bucket.flip();
+        int written = writeFully(channel, bucket, position);
+        bucket.clear();
+        return written;
+    }
+
+    /**
+     * Sort the records in block[0, length), on all the threads of the pool if parallel is true.
+     */
+    private void sortRecords(byte[] block, int length, boolean parallel) {
+        int count = length / recordSize;
+        if (recordSize <= MAX_PACKED) {
+            long[] keys = new long[count];
+            for (int i = 0, pos = 0; i < count; i++) {
+                long key = 0;
+                for (int end = pos + recordSize; pos < end; pos++) {
+                    key = key << 8 | (block[pos] & 0xFF);
+                }
+                keys[i] = key;
+            }
+            if (parallel) {
+                pool.invoke(new LongMergeSort(keys, new long[count], 0, count, threshold(count)));
+            } else {
+                Arrays.sort(keys);
+            }
+            for (int i = 0, pos = 0; i < count; i++) {
+                long key = keys[i];
+                for (int j = recordSize - 1; j >= 0; j--) {
+                    block[pos + j] = (byte) key;
+                    key >>>= 8;
+                }
+                pos += recordSize;
+            }
+        } else {
+            byte[][] records = new byte[count][recordSize];
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(block, i * recordSize, records[i], 0, recordSize);
+            }
+            if (parallel) {
+                pool.invoke(new RecordMergeSort(records, new byte[count][], 0, count, threshold(count)));
+            } else {
+                Arrays.sort(records, Arrays::compareUnsigned);
+            }
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(records[i], 0, block, i * recordSize, recordSize);
+            }
+        }
+    }
+
+    /**
+     * @return the size of the parts that a parallel sort of count records sorts on a single thread (a few per
+     * thread, so that threads that finish early can take more).
+     */
+    private int threshold(int count) {
+        return Math.max(MIN_SORT_PART, count / (4 * pool.getParallelism()) + 1);
+    }
+
+    /**
+     * Sorts keys[from, to) by sorting the halves in parallel and merging them through temp (which must be as long).
+     * Written for the pool it is invoked on: {@link Arrays#parallelSort} splits by the parallelism of the common
+     * pool instead, and doesn't split at all if that is 1.
+     */
+    private static class LongMergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final long[] temp;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        LongMergeSort(long[] keys, long[] temp, int from, int to, int threshold) {
+            this.keys = keys;
+            this.temp = temp;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Arrays.sort(keys, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LongMergeSort(keys, temp, from, mid, threshold),
+                    new LongMergeSort(keys, temp, mid, to, threshold));
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                temp[k] = j == to || (i < mid && keys[i] <= keys[j]) ? keys[i++] : keys[j++];
+            }
+            System.arraycopy(temp, from, keys, from, to - from);
+        }
+    }
+
+    /**
+     * Like {@link LongMergeSort}, for records that are compared as unsigned bytes.
+     */
+    private static class RecordMergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][] records;
+        private final byte[][] temp;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        RecordMergeSort(byte[][] records, byte[][] temp, int from, int to, int threshold) {
+            this.records = records;
+            this.temp = temp;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Arrays.sort(records, from, to, Arrays::compareUnsigned);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RecordMergeSort(records, temp, from, mid, threshold),
+                    new RecordMergeSort(records, temp, mid, to, threshold));
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                boolean left = j == to || (i < mid && Arrays.compareUnsigned(records[i], records[j]) <= 0);
+                temp[k] = left ? records[i++] : records[j++];
+            }
+            System.arraycopy(temp, from, records, from, to - from);
+        }
+    }
+
+    /**
+     * Merge the sorted runs in source[start, start + length) into the same place in target.
+     */
+    private void merge(FileChannel source, FileChannel target, long start, long runLength, long length,
+                       int bufferSize) throws IOException {
+        PriorityQueue<Run> runs = new PriorityQueue<>();
+        for (long runStart = start; runStart < start + length; runStart += runLength) {
+            runs.add(new Run(source, runStart, Math.min(runStart + runLength, start + length), bufferSize));
+        }
+        ByteBuffer out = ByteBuffer.allocate(bufferSize);
+        long position = start;
+        while (!runs.isEmpty()) {
+            Run run = runs.poll();
+            if (!out.hasRemaining()) {
+                out.flip();
+                position += writeFully(target, out, position);
+                out.clear();
+            }
+            out.put(run.buf.array(), run.buf.position(), recordSize);
+            if (run.advance()) {
+                runs.add(run);
+            }
+        }
+        out.flip();
+        writeFully(target, out, position);
+    }
+
+    /**
+     * A sorted run being merged, read a buffer at a time.
+     */
+    private class Run implements Comparable<Run> {
+        final FileChannel channel;
+        final ByteBuffer buf; // the current record is at the position
+        long next; // where the rest of the run starts in the file
+        final long end;
+
+        Run(FileChannel channel, long start, long end, int bufferSize) throws IOException {
+            this.channel = channel;
+            this.buf = ByteBuffer.allocate(bufferSize);
+            this.next = start;
+            this.end = end;
+            fill();
+        }
+
+        private void fill() throws IOException {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - next));
+            next += readFully(channel, buf, next);
+            buf.flip();
+        }
+
+        /**
+         * Move to the next record.
+         *
+         * @return false at the end of the run.
+         */
+        boolean advance() throws IOException {
+            buf.position(buf.position() + recordSize);
+            if (!buf.hasRemaining()) {
+                if (next == end) {
+                    return false;
+                }
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            return Arrays.compareUnsigned(buf.array(), buf.position(), buf.position() + recordSize,
+                    other.buf.array(), other.buf.position(), other.buf.position() + recordSize);
+        }
+    }
+
+    /**
+     * Read until the buffer is full (the records are in the file, so the file can't end first).
+     *
+     * @return the number of bytes read.
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int start = buf.position();
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position() - start) < 0) {
+                throw new IOException("File changed while sorting");
+            }
+        }
+        return buf.position() - start;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int start = buf.position();
+        while (buf.hasRemaining()) {
+            channel.write(buf, position + buf.position() - start);
+        }
+        return buf.position() - start;
+    }
+}
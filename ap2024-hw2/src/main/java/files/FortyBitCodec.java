@@ -0,0 +1,240 @@
+package files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Decodes and encodes many 40-bit (unsigned) integers at once, in the format read by
+ * {@link Streams#readNumber(InputStream)}: five bytes each, with the most-significant byte first.
+ * <p>
+ * Each number is read as a single big-endian long (the five bytes of the number and the three after it) shifted
+ * right, instead of byte by byte; only the last numbers of a block, which have no three bytes after them, are read
+ * byte by byte. Numbers are written the same way, each long overwriting the three spare bytes of the one before.
+ * Streams are read and written in large blocks. Bytes at the end that don't make up a whole number are ignored.
+ */
+public final class FortyBitCodec {
+    public static final int BYTES = 5;
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final int BLOCK_NUMBERS = 1 << 13; // the numbers in a block of a stream
+    private static final int MAX_MAPPING = Integer.MAX_VALUE / BYTES * BYTES; // the most of a file mapped at once
+
+    private FortyBitCodec() {
+    }
+
+    /**
+     * @return the number stored in src[offset, offset + 5).
+     */
+    public static long decode(byte[] src, int offset) {
+        if (offset + Long.BYTES <= src.length) {
+            return (long) LONGS.get(src, offset) >>> 24;
+        }
+        long value = 0;
+        for (int i = 0; i < BYTES; i++) {
+            value = value << 8 | (src[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Decode count numbers from src, starting at srcOffset, into dst.
+     */
+    public static void decode(byte[] src, int srcOffset, long[] dst, int dstOffset, int count) {
+        int wide = wideCount(src.length - srcOffset, count);
+        int i = 0;
+        for (int pos = srcOffset; i < wide; i++, pos += BYTES) {
+            dst[dstOffset + i] = (long) LONGS.get(src, pos) >>> 24;
+        }
+        for (; i < count; i++) {
+            dst[dstOffset + i] = decode(src, srcOffset + i * BYTES);
+        }
+    }
+
+    /**
+     * Decode count numbers from src, starting at its position (which isn't changed), into dst.
+     */
+    public static void decode(ByteBuffer src, long[] dst, int dstOffset, int count) {
+        ByteBuffer buf = src.order() == ByteOrder.BIG_ENDIAN ? src : src.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int pos = buf.position();
+        int wide = wideCount(buf.limit() - pos, count);
+        int i = 0;
+        for (; i < wide; i++, pos += BYTES) {
+            dst[dstOffset + i] = buf.getLong(pos) >>> 24;
+        }
+        for (; i < count; i++, pos += BYTES) {
+            long value = 0;
+            for (int j = 0; j < BYTES; j++) {
+                value = value << 8 | (buf.get(pos + j) & 0xFF);
+            }
+            dst[dstOffset + i] = value;
+        }
+    }
+
+    /**
+     * @return how many of count numbers at the start of length bytes have three more bytes after them.
+     */
+    private static int wideCount(int length, int count) {
+        return length < Long.BYTES ? 0 : Math.min(count, (length - Long.BYTES) / BYTES + 1);
+    }
+
+    /**
+     * Encode count numbers from src into dst, starting at dstOffset.
+     *
+     * @throws IllegalArgumentException if a number doesn't fit in 40 bits
+     */
+    public static void encode(long[] src, int srcOffset, int count, byte[] dst, int dstOffset) {
+        // Only the numbers whose long ends within the encoded range (so nothing after it is overwritten)
+        int wide = wideCount(Math.min(dst.length - dstOffset, count * BYTES), count);
+        int i = 0;
+        for (int pos = dstOffset; i < wide; i++, pos += BYTES) {
+            LONGS.set(dst, pos, check(src[srcOffset + i]) << 24); // the low three bytes are overwritten next
+        }
+        for (; i < count; i++) {
+            long value = check(src[srcOffset + i]);
+            int pos = dstOffset + i * BYTES;
+            for (int j = BYTES - 1; j >= 0; j--) {
+                dst[pos + j] = (byte) value;
+                value >>>= 8;
+            }
+        }
+    }
+
+    private static long check(long value) {
+        if ((value & ~MAX_VALUE) != 0) {
+            throw new IllegalArgumentException("Not a 40-bit unsigned number: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Write numbers to a stream.
+     *
+     * @throws IllegalArgumentException if a number doesn't fit in 40 bits (the numbers before it may be written)
+     */
+    public static void write(OutputStream out, long[] values, int offset, int count) throws IOException {
+        byte[] block = new byte[Math.min(count, BLOCK_NUMBERS) * BYTES];
+        for (int done = 0; done < count; ) {
+            int n = Math.min(count - done, BLOCK_NUMBERS);
+            encode(values, offset + done, n, block, 0);
+            out.write(block, 0, n * BYTES);
+            done += n;
+        }
+    }
+
+    /**
+     * Read all the numbers in a stream.
+     */
+    public static long[] readAll(InputStream in) throws IOException {
+        long[] values = new long[BLOCK_NUMBERS];
+        int count = 0;
+        for (NumberIterator numbers = new NumberIterator(in); numbers.fill(); ) {
+            if (count + numbers.count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, count + numbers.count));
+            }
+            System.arraycopy(numbers.values, 0, values, count, numbers.count);
+            count += numbers.count;
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Read all the numbers in a file, by mapping it into memory.
+     */
+    public static long[] readAll(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long count = channel.size() / BYTES;
+            if (count > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many numbers for an array: " + file);
+            }
+            long[] values = new long[(int) count];
+            for (long start = 0; start < count * BYTES; start += MAX_MAPPING) {
+                long size = Math.min(MAX_MAPPING, count * BYTES - start);
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                decode(map, values, (int) (start / BYTES), (int) (size / BYTES));
+            }
+            return values;
+        }
+    }
+
+    /**
+     * @return the numbers in a stream, read a block at a time as the stream is consumed (an IOException while
+     * reading is thrown as an {@link UncheckedIOException}). The stream is not closed.
+     */
+    public static LongStream stream(InputStream in) {
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(new NumberIterator(in),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Reads the numbers of a stream a block at a time.
+     */
+    private static class NumberIterator implements PrimitiveIterator.OfLong {
+        private final InputStream in;
+        private final byte[] block = new byte[BLOCK_NUMBERS * BYTES];
+        private int pending; // bytes at the start of the block that weren't decoded yet
+        final long[] values = new long[BLOCK_NUMBERS];
+        int count; // the numbers in values
+        private int next;
+
+        NumberIterator(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Decode the next block of numbers.
+         *
+         * @return false if there are no more.
+         */
+        boolean fill() throws IOException {
+            int length = pending;
+            int n;
+            while (length < block.length && (n = in.read(block, length, block.length - length)) >= 0) {
+                length += n;
+            }
+            count = length / BYTES;
+            next = 0;
+            decode(block, 0, values, 0, count);
+            pending = length - count * BYTES;
+            System.arraycopy(block, count * BYTES, block, 0, pending);
+            return count > 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < count) {
+                return true;
+            }
+            try {
+                return fill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return values[next++];
+        }
+    }
+}
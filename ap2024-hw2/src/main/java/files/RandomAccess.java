@@ -2,86 +2,77 @@ package files;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 
 public class RandomAccess {
+    static final int BLOCK_SIZE = 1 << 16; // the most of a file that is held in memory at once (to count bytes)
+    static final int SORT_MEMORY = 1 << 22; // the memory budget for sorting records
+
     /**
      * Treat the file as an array of (unsigned) 8-bit values and sort them
-     * in-place using a bubble-sort algorithm.
-     * You may not read the whole file into memory!
+     * in-place using a counting sort: one pass counts how many times each of
+     * the 256 values appears, and a second pass writes the values in order.
+     * Both passes go through the file in blocks of a fixed size, so the memory
+     * used doesn't depend on the size of the file.
      *
      * @param file
      */
     public static void sortBytes(RandomAccessFile file) throws IOException {
         long fileLength = file.length();
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, fileLength)];
+        long[] counts = new long[256];
+
+        file.seek(0);
+        for (long done = 0; done < fileLength; ) { // count the values
+            int length = (int) Math.min(block.length, fileLength - done);
+            file.readFully(block, 0, length);
+            for (int i = 0; i < length; i++) {
+                counts[block[i] & 0xFF]++;
+            }
+            done += length;
+        }
 
-        for (long i = 0; i < fileLength - 1; i++) {
-            for (long j = 0; j < fileLength - i - 1; j++) {
-
-                file.seek(j); // resets the pointer to j
-                int firstByte = file.read() & 0xFF;
-                ;
-                int secondByte = file.read() & 0xFF;
-                ;
-
-                if (firstByte > secondByte) { // compare two bytes
-                    file.seek(j); // resets the pointer to j
-                    file.write(secondByte); // writes in position j the smaller byte
-                    file.seek(j + 1); // resets the pointer to j + 1
-                    file.write(firstByte); // writes in position j + 1 the smaller byte
+        file.seek(0);
+        int filled = 0;
+        for (int value = 0; value < 256; value++) { // write each value as many times as it was counted
+            for (long left = counts[value]; left > 0; ) {
+                int n = (int) Math.min(left, block.length - filled);
+                Arrays.fill(block, filled, filled + n, (byte) value);
+                filled += n;
+                left -= n;
+                if (filled == block.length) {
+                    file.write(block);
+                    filled = 0;
                 }
             }
         }
+        file.write(block, 0, filled);
     }
 
     /**
      * Treat the file as an array of unsigned 24-bit values (stored MSB first) and sort
-     * them in-place using a bubble-sort algorithm.
+     * them in-place using an {@link ExternalSort} in radix mode: a file that doesn't fit
+     * in {@link #SORT_MEMORY} is counted in one pass, then distributed by each of the
+     * three bytes of the values in turn, in time linear in the size of the file.
      * You may not read the whole file into memory!
      *
      * @param file
      * @throws IOException
      */
     public static void sortTriBytes(RandomAccessFile file) throws IOException {
-        long fileLength = file.length();
-
-        for (long i = 0; i < fileLength; i += 3) {
-            for (long j = 0; j < fileLength - i; j += 3) {
-
-                file.seek(j); // resets the pointer to j
-
-                //reads 3 bytes
-                int firstByte = file.read() & 0xFF;
-                int secondByte = file.read() & 0xFF;
-                int thirdByte = file.read() & 0xFF;
-
-                int firstValue = firstByte * 65536 + secondByte * 256 + thirdByte; // adds all the bytes to one value
-
-                file.seek(j + 3); // resets the pointer to read the next 3 bytes
-
-                //reads 3 bytes
-                int firstByteSecondValue = file.read() & 0xFF;
-                int secondByteSecondValue = file.read() & 0xFF;
-                int thirdByteSecondValue = file.read() & 0xFF;
-
-                int secondValue = firstByteSecondValue * 65536 + secondByteSecondValue * 256 + thirdByteSecondValue; // adds all the bytes to one value
-
-
-                if (firstValue > secondValue) { // compare two values
-                    file.seek(j); // resets the pointer to j
-
-                    // writes the 3 smallest bytes
-                    file.write(firstByteSecondValue);
-                    file.write(secondByteSecondValue);
-                    file.write(thirdByteSecondValue);
-
-                    file.seek(j + 3); // resets the pointer to j + 3
+        sortTriBytes(file, ExternalSort.Mode.RADIX);
+    }
 
-                    // writes the 3 largest bytes
-                    file.write(firstByte);
-                    file.write(secondByte);
-                    file.write(thirdByte);
-                }
-            }
-        }
+    /**
+     * Sort the file as in {@link #sortTriBytes(RandomAccessFile)}, choosing how a file
+     * that doesn't fit in {@link #SORT_MEMORY} is sorted (e.g. in parallel, on the
+     * common fork-join pool).
+     *
+     * @param file
+     * @param mode
+     * @throws IOException
+     */
+    public static void sortTriBytes(RandomAccessFile file, ExternalSort.Mode mode) throws IOException {
+        new ExternalSort(3, SORT_MEMORY, mode).sort(file);
     }
 }
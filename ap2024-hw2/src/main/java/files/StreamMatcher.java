@@ -0,0 +1,164 @@
+package files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds a set of strings in a stream of characters that is fed to it one character at a time, without ever looking
+ * back (so it can be used on input that is read in pieces, and never reads past the end of a match).
+ * <p>
+ * The strings are compiled into an Aho-Corasick automaton: a trie of the strings, in which each character that
+ * doesn't continue a path moves to the longest suffix of the input that is a prefix of one of the strings. (For a
+ * single string, this is the Knuth-Morris-Pratt failure table.) The failure moves are precomputed for every state
+ * and character, so each character of the input takes a single table lookup, and the search takes time linear in
+ * the input no matter how the strings overlap themselves. Characters that don't appear in any of the strings share
+ * a single column of the table.
+ * <p>
+ * A matcher has a current state, so it can only be used by one thread at a time.
+ */
+public class StreamMatcher {
+    private final String[] patterns;
+    private final char[] alphabet; // the characters of the patterns, sorted (their column is their index + 1)
+    private final byte[] asciiColumns; // the columns of the ASCII characters, which are looked up directly
+    private final int columns;
+    private final int[] next; // next[state * columns + column] is the state after a character
+    private final int[] matches; // the longest pattern that ends in each state, or -1
+    private int state;
+
+    /**
+     * @param patterns the strings to look for (not empty)
+     */
+    public StreamMatcher(String... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("No patterns to match");
+        }
+        this.patterns = patterns.clone();
+
+        StringBuilder chars = new StringBuilder();
+        for (String pattern : this.patterns) {
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern");
+            }
+            chars.append(pattern);
+        }
+        char[] all = chars.toString().toCharArray();
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        alphabet = Arrays.copyOf(all, distinct);
+        columns = distinct + 1; // column 0 is every other character
+        asciiColumns = new byte[128];
+        if (columns > Byte.MAX_VALUE) { // the columns don't fit in asciiColumns, look all characters up
+            Arrays.fill(asciiColumns, (byte) -1);
+        } else {
+            for (int i = 0; i < distinct && alphabet[i] < 128; i++) {
+                asciiColumns[alphabet[i]] = (byte) (i + 1);
+            }
+        }
+
+        // The trie: children.get(state)[column] is the child of a state, or 0 if there is none
+        List<int[]> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>(); // the pattern that ends at each state, or -1
+        children.add(new int[columns]);
+        terminal.add(-1);
+        for (int p = 0; p < this.patterns.length; p++) {
+            int s = 0;
+            for (int i = 0; i < this.patterns[p].length(); i++) {
+                int column = column(this.patterns[p].charAt(i));
+                if (children.get(s)[column] == 0) {
+                    children.get(s)[column] = children.size();
+                    children.add(new int[columns]);
+                    terminal.add(-1);
+                }
+                s = children.get(s)[column];
+            }
+            if (terminal.get(s) < 0) { // a repeated pattern matches as the first one
+                terminal.set(s, p);
+            }
+        }
+
+        // Visit the states breadth-first, so the failure state (which is shallower) is complete before it is used
+        int states = children.size();
+        next = new int[states * columns];
+        matches = new int[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int s = queue[head++];
+            int[] child = children.get(s);
+            int match = terminal.get(s);
+            matches[s] = match >= 0 || s == 0 ? match : matches[fail[s]];
+            for (int column = 1; column < columns; column++) {
+                int failNext = s == 0 ? 0 : next[fail[s] * columns + column];
+                if (child[column] != 0) {
+                    fail[child[column]] = failNext;
+                    next[s * columns + column] = child[column];
+                    queue[tail++] = child[column];
+                } else {
+                    next[s * columns + column] = failNext;
+                }
+            }
+        }
+    }
+
+    private int column(char c) {
+        if (c < 128) {
+            int column = asciiColumns[c];
+            if (column >= 0) {
+                return column;
+            }
+        }
+        int index = Arrays.binarySearch(alphabet, c);
+        return index < 0 ? 0 : index + 1;
+    }
+
+    /**
+     * @return the state after the character c is read in state s (the start state is 0).
+     */
+    int transition(int s, char c) {
+        return next[s * columns + column(c)];
+    }
+
+    /**
+     * @return the index of the longest pattern that the input read up to state s ends with, or -1 if there is none.
+     */
+    int match(int s) {
+        return matches[s];
+    }
+
+    /**
+     * Feed the next character of the input.
+     *
+     * @return the index of the longest pattern that ends with this character, or -1 if none does.
+     */
+    public int next(char c) {
+        state = transition(state, c);
+        return matches[state];
+    }
+
+    /**
+     * Forget the input read so far.
+     */
+    public void reset() {
+        state = 0;
+    }
+
+    /**
+     * @return the pattern with the given index.
+     */
+    public String getPattern(int index) {
+        return patterns[index];
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+}
@@ -1,10 +1,16 @@
 package files;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Streams {
+    private static final int FILTER_BUFFER_SIZE = 1 << 18; // the block size of channel filtering
+
     /**
      * Read from an InputStream until a quote character (") is found, then read
      * until another quote character is found and return the bytes in between the two quotes.
@@ -12,6 +18,7 @@ public class Streams {
      *
      * @param in
      * @return A list containing the bytes between the first occurrence of a quote character and the second.
+     * @see ByteBlockReader#getQuoted() for reading large streams
      */
     public static List<Byte> getQuoted(InputStream in) throws IOException {
 
@@ -47,33 +54,22 @@ public class Streams {
      * @param in      the Reader to read from
      * @param endMark the string indicating to stop reading.
      * @return The string read up to (not including) the endMark (if the endMark is not found, return up to the end of the stream).
+     * @see CharBlockReader#readUntil(String) for reading large streams
      */
     public static String readUntil(Reader in, String endMark) throws IOException {
+        if (endMark.isEmpty()) {
+            return "";
+        }
+        StreamMatcher matcher = new StreamMatcher(endMark); // never goes back, so partial matches cost nothing
         StringBuilder result = new StringBuilder();
         int currentChar;
 
-        while ((currentChar = in.read()) != -1) { // whiile we didnt reach the end of the file
-            StringBuilder midResult = new StringBuilder();
-
-            if (currentChar == endMark.charAt(0)) { // Check if the current character is the start of the endMark
-                boolean match = true;
-
-                for (int i = 1; i < endMark.length(); i++) { // Attempt to match the entire endMark
-                    int nextChar = in.read();
-                    midResult.append((char) nextChar);
-
-                    if (nextChar == -1 || nextChar != endMark.charAt(i)) { //if we reached the end of the file or a char doesnt match the endMark
-                        result.append(endMark.charAt(0));
-                        result.append(midResult);
-                        match = false;
-                        break;
-                    }
-                }
-                if (match) {
-                    return result.toString(); // Return the string up to (not including) the endMark
-                }
-            } else
-                result.append((char) currentChar); // The current character is not part of the endMark, append it to the result
+        while ((currentChar = in.read()) != -1) { // while we didn't reach the end of the file
+            result.append((char) currentChar);
+            if (matcher.next((char) currentChar) >= 0) { // we just read the whole endMark
+                result.setLength(result.length() - endMark.length());
+                break;
+            }
         }
         return result.toString();
     }
@@ -96,6 +92,80 @@ public class Streams {
         }
     }
 
+    /**
+     * Copy bytes from one channel to another, ignoring all occurrences of the bad bytes.
+     * The bytes are read in large blocks into an array (wrapped in a buffer for the channels), and compacted in place
+     * there before they are written out of the same array: with a single bad byte, the runs of good bytes between
+     * them are found eight bytes at a time and moved with {@link System#arraycopy}; with several, every byte is
+     * copied and kept or dropped by a table lookup, without a branch per byte.
+     * <p>
+     * This isn't zero-copy: file and socket channels copy a heap buffer through a temporary direct buffer of the JDK
+     * on every read and write. Keeping the bytes in an array costs those two copies, but lets them be scanned and
+     * moved with array operations instead of one buffer access at a time (the copies are bulk memory copies, which
+     * are cheap next to the scan).
+     *
+     * @param in
+     * @param out
+     * @param badBytes the bytes to drop
+     */
+    public static void filterOut(ReadableByteChannel in, WritableByteChannel out, byte... badBytes)
+            throws IOException {
+        byte[] block = new byte[FILTER_BUFFER_SIZE];
+        ByteBuffer buf = ByteBuffer.wrap(block);
+        int[] keep = new int[256]; // 1 for the bytes to copy, 0 for the bad ones
+        Arrays.fill(keep, 1);
+        for (byte b : badBytes) {
+            keep[b & 0xFF] = 0;
+        }
+
+        while (in.read(buf) >= 0) {
+            int length = buf.position();
+            if (badBytes.length == 1) {
+                length = removeAll(block, length, badBytes[0]);
+            } else if (badBytes.length > 1) {
+                length = removeAll(block, length, keep);
+            }
+            buf.clear().limit(length);
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    /**
+     * Remove all occurrences of a byte from block[0, length), moving the rest to the start.
+     *
+     * @return the number of bytes left.
+     */
+    private static int removeAll(byte[] block, int length, byte badByte) {
+        int kept = 0;
+        int from = 0;
+        while (from < length) {
+            int bad = ByteScan.indexOf(block, from, length, badByte);
+            int end = bad < 0 ? length : bad;
+            System.arraycopy(block, from, block, kept, end - from);
+            kept += end - from;
+            from = end + 1;
+        }
+        return kept;
+    }
+
+    /**
+     * Remove all the bytes that aren't kept from block[0, length), moving the rest to the start.
+     *
+     * @return the number of bytes left.
+     */
+    private static int removeAll(byte[] block, int length, int[] keep) {
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = block[i];
+            block[kept] = b; // overwritten by the next byte unless this one is kept
+            kept += keep[b & 0xFF];
+        }
+        return kept;
+    }
+
     /**
      * Read a 40-bit (unsigned) integer from the stream and return it. The number is represented as five bytes,
      * with the most-significant byte first.
@@ -103,6 +173,7 @@ public class Streams {
      *
      * @param in
      * @return the number read from the stream
+     * @see FortyBitCodec for reading many numbers
      */
     public static long readNumber(InputStream in) throws IOException {
         long result = 0;
@@ -1,7 +1,9 @@
 package files;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 public class TreasureHunt {
     /**
@@ -25,7 +27,91 @@ public class TreasureHunt {
      * @throws IOException
      */
     public static long findTreasure(FileChannel map, TreasureMapDecoder decoder, long firstClue) throws IOException {
-        // TODO: implement
-        return 0;
+        CachedMap cachedMap = new CachedMap(map);
+        long mapLength = cachedMap.size * 8;
+        long location = -1; // the first clue isn't read from the map
+        long clue = firstClue;
+        while (true) {
+            long next = decoder.decodeClue(clue, location, mapLength);
+            if (next == -1) {
+                return location;
+            }
+            location = next;
+            clue = cachedMap.readClue(location);
+        }
+    }
+
+    static final int PAGE_SIZE = 1 << 12;
+    static final int CACHE_PAGES = 64; // must be a power of 2
+
+    /**
+     * Reads clues from a map through a cache of pages, so that clues near each other (or read again) don't each
+     * need a read from the channel. The pages are read straight into the arrays that keep them, in a direct-mapped
+     * cache: page p is kept in slot p % {@link #CACHE_PAGES}, replacing the page that was there.
+     */
+    static class CachedMap {
+        private final FileChannel map;
+        final long size;
+        private final long[] cachedPages = new long[CACHE_PAGES]; // the page in each slot, or -1
+        private final byte[][] pages = new byte[CACHE_PAGES][PAGE_SIZE];
+        private final ByteBuffer[] buffers = new ByteBuffer[CACHE_PAGES]; // each page wrapped, to read into it
+        long reads; // the pages read from the channel
+
+        CachedMap(FileChannel map) throws IOException {
+            this.map = map;
+            this.size = map.size();
+            Arrays.fill(cachedPages, -1);
+            for (int i = 0; i < CACHE_PAGES; i++) {
+                buffers[i] = ByteBuffer.wrap(pages[i]);
+            }
+        }
+
+        /**
+         * @return the 48 bits of the map starting at a bit index (anything beyond the end of the map is 0).
+         */
+        long readClue(long location) throws IOException {
+            long offset = location >>> 3;
+            int shift = (int) (location & 7);
+            // the 7 bytes that hold the clue, as a 56-bit number
+            long bits = 0;
+            int inPage = (int) (offset & (PAGE_SIZE - 1));
+            if (inPage + 7 <= PAGE_SIZE) {
+                byte[] page = page(offset / PAGE_SIZE);
+                for (int i = 0; i < 7; i++) {
+                    bits = bits << 8 | (page[inPage + i] & 0xFF);
+                }
+            } else { // the clue crosses into the next page
+                for (int i = 0; i < 7; i++) {
+                    long b = offset + i;
+                    bits = bits << 8 | (page(b / PAGE_SIZE)[(int) (b & (PAGE_SIZE - 1))] & 0xFF);
+                }
+            }
+            return (bits >>> (8 - shift)) & ((1L << 48) - 1);
+        }
+
+        /**
+         * @return the contents of a page (zeros beyond the end of the map), from the cache if it's there.
+         */
+        private byte[] page(long index) throws IOException {
+            int slot = (int) (index & (CACHE_PAGES - 1));
+            byte[] page = pages[slot];
+            if (cachedPages[slot] == index) {
+                return page;
+            }
+            ByteBuffer buffer = buffers[slot];
+            buffer.clear();
+            long start = index * PAGE_SIZE;
+            if (start < size) {
+                reads++;
+                while (buffer.hasRemaining()) { // read until the page is full or the map ends
+                    if (map.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+            }
+            Arrays.fill(page, buffer.position(), PAGE_SIZE, (byte) 0);
+            cachedPages[slot] = index;
+            return page;
+        }
     }
 }
@@ -0,0 +1,85 @@
+package dict;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AtomicFileWriterTest {
+	File dir;
+	File target;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("AtomicTest").toFile();
+		target = new File(dir, "dict.txt");
+		Files.write(target.toPath(), "old:contents\n".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void cleanup() {
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	/**
+	 * A writer that is closed without committing (e.g. because the flush failed
+	 * halfway) leaves the old file as it was, and no temporary files behind.
+	 */
+	@Test
+	public void abortTest() throws IOException {
+		try (AtomicFileWriter writer = new AtomicFileWriter(target)) {
+			writer.writeEntry("new", "contents");
+		}
+		assertArrayEquals("Aborted write changed the file", "old:contents\n".getBytes(StandardCharsets.UTF_8),
+				Files.readAllBytes(target.toPath()));
+		assertEquals("Temporary file left behind", 1, dir.listFiles().length);
+	}
+
+	/**
+	 * Writes larger than the buffer, of every kind, end up in the file in order.
+	 */
+	@Test
+	public void commitTest() throws IOException {
+		StringBuilder expected = new StringBuilder();
+		try (AtomicFileWriter writer = new AtomicFileWriter(target)) {
+			for (int i = 0; i < AtomicFileWriter.BUFFER_SIZE / 10; ++i) {
+				writer.writeEntry("w" + i, "\u05d0" + i);
+				expected.append("w" + i + ":\u05d0" + i + "\n");
+			}
+			writer.writeInt(0x41424344);
+			writer.write(new byte[AtomicFileWriter.BUFFER_SIZE + 1]);
+			assertEquals(expected.toString().getBytes(StandardCharsets.UTF_8).length + 4
+					+ AtomicFileWriter.BUFFER_SIZE + 1, writer.getBytesWritten());
+			writer.commit();
+		}
+		expected.append("ABCD");
+		expected.append(new String(new char[AtomicFileWriter.BUFFER_SIZE + 1]));
+		assertEquals(expected.toString(), new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+		assertEquals("Temporary file left behind", 1, dir.listFiles().length);
+	}
+
+	/**
+	 * A temporary file left behind by a crash is overwritten by the next
+	 * writer, instead of being left next to the file.
+	 */
+	@Test
+	public void staleTempTest() throws IOException {
+		File temp = new File(target.getPath() + AtomicFileWriter.TEMP_SUFFIX);
+		Files.write(temp.toPath(), new byte[1000]);
+		try (AtomicFileWriter writer = new AtomicFileWriter(target)) {
+			writer.writeEntry("new", "contents");
+			writer.commit();
+		}
+		assertEquals("new:contents\n", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+		assertEquals("Temporary file left behind", 1, dir.listFiles().length);
+	}
+}
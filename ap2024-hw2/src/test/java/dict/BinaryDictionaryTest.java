@@ -0,0 +1,72 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new BinaryDictionary(dictFile);
+	}
+
+	/**
+	 * Check that a text dictionary (as written by InMemoryDictionary) is
+	 * converted when it is opened, and that the binary file is smaller.
+	 */
+	@Test
+	public void convertTextTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int i = 0; i < 1000; ++i)
+			expected.put("prefix/common/word" + i, "def " + i);
+
+		try (Writer writer = new FileWriter(dictFile)) {
+			for (String word : expected.descendingKeySet()) // Out of order
+				writer.write(word + ":" + expected.get(word) + "\n");
+		}
+		long textLength = dictFile.length();
+		assertFalse(BinaryDictionary.isBinary(dictFile));
+
+		PersistentDictionary dict = getDictionary(dictFile);
+		assertTrue("Text file wasn't converted", BinaryDictionary.isBinary(dictFile));
+		assertTrue("Front-coding didn't save space", dictFile.length() < textLength / 2);
+		testEquality("Recall after conversion", expected, dict);
+
+		dict.close();
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a corrupt file fails to load.
+	 */
+	@Test
+	public void checksumTest() throws Exception {
+		dictFile.delete();
+		PersistentDictionary dict = getDictionary(dictFile);
+		fillMap(dict, testWords, testDefs);
+		dict.close();
+
+		try (RandomAccessFile file = new RandomAccessFile(dictFile, "rw")) {
+			file.seek(20); // in the data of the first block
+			int b = file.read();
+			file.seek(20);
+			file.write(b ^ 1);
+		}
+		try {
+			getDictionary(dictFile);
+			fail("Corrupt file was loaded");
+		} catch (IOException e) {
+			// expected
+		}
+		dictFile.delete();
+	}
+}
@@ -0,0 +1,41 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachedDictionaryTest extends PersistentDictionaryTest {
+	public final static int CAPACITY = 16; // small, so the extended tests evict words
+
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new CachedDictionary(dictFile, CAPACITY);
+	}
+
+	@Test
+	public void countersTest() throws Exception {
+		dictFile.delete();
+		CachedDictionary dict = new CachedDictionary(dictFile, 2);
+		fillMap(dict, testWords, testDefs);
+		dict.close();
+
+		dict = new CachedDictionary(dictFile, 2);
+		dict.get("First"); // miss
+		dict.get("First"); // hit
+		dict.get("Second"); // miss
+		dict.get("CAB"); // miss, evicts "First"
+		dict.get("First"); // miss, evicts "Second"
+		dict.get("CAB"); // hit
+		dict.get("nothing"); // miss
+
+		assertEquals("hits", 2, dict.getHits());
+		assertEquals("misses", 5, dict.getMisses());
+		assertEquals("evictions", 2, dict.getEvictions());
+
+		dict.close();
+		dictFile.delete();
+	}
+}
@@ -0,0 +1,44 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeMap;
+
+public class CompactDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new CompactDictionary(dictFile);
+	}
+
+	/**
+	 * Check that the dictionary still works after enough changes to merge
+	 * them into new slabs, both on and off the heap.
+	 */
+	@Test
+	public void mergeTest() throws Exception {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			TreeMap<String, String> expected = new TreeMap<String, String>();
+			int numWords = 3 * CompactDictionary.MIN_MERGE_SIZE;
+			String[] words = randomStrings(numWords, MAX_LEN);
+			String[] defs = randomStrings(numWords, MAX_LEN);
+
+			dictFile.delete();
+			PersistentDictionary dict = new CompactDictionary(dictFile, offHeap);
+			fillMap(expected, words, defs);
+			fillMap(dict, words, defs);
+			for (int i = 0; i < numWords; i += 3) {
+				expected.remove(words[i]);
+				dict.remove(words[i]);
+			}
+			testEquality("Recall after merge", expected, dict);
+			dict.close();
+
+			dict = new CompactDictionary(dictFile, offHeap);
+			testEquality("Persistent recall after merge", expected, dict);
+			dict.close();
+		}
+		dictFile.delete();
+	}
+}
@@ -0,0 +1,128 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConcurrentDictionaryTest extends PersistentDictionaryTest {
+	public final static int NUM_THREADS = 8; // number of concurrent writers
+	public final static int NUM_WORDS = 2000; // number of words per writer
+
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new ConcurrentDictionary(dictFile);
+	}
+
+	/**
+	 * Several threads add and remove their own words while another thread
+	 * reads and flushes the dictionary.
+	 */
+	@Test
+	public void concurrentWritersTest() throws Exception {
+		dictFile.delete();
+		final PersistentDictionary dict = getDictionary(dictFile);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < NUM_THREADS; ++t) {
+			final int id = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < NUM_WORDS; ++i) {
+					dict.put(id + "-" + i, "def " + i);
+					if (i % 2 == 1)
+						dict.remove(id + "-" + (i - 1));
+				}
+			}));
+		}
+		threads.add(new Thread(() -> {
+			try {
+				for (int i = 0; i < 20; ++i) {
+					dict.close();
+					assertNull(dict.get("missing"));
+				}
+			} catch (Throwable e) {
+				synchronized (errors) {
+					errors.add(e);
+				}
+			}
+		}));
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals("Reader or flusher failed: " + errors, 0, errors.size());
+
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int t = 0; t < NUM_THREADS; ++t)
+			for (int i = 1; i < NUM_WORDS; i += 2)
+				expected.put(t + "-" + i, "def " + i);
+		testEquality("Concurrent writers", expected, dict);
+
+		dict.close();
+		testEquality("Concurrent writers after flush", expected, getDictionary(dictFile));
+		dictFile.delete();
+	}
+
+	/**
+	 * Several threads change and flush the dictionary at the same time in
+	 * group-commit mode; every flush must include the flushing thread's changes.
+	 */
+	@Test
+	public void groupCommitTest() throws Exception {
+		dictFile.delete();
+		checkConcurrentClose(new ConcurrentDictionary(dictFile, true));
+	}
+
+	/**
+	 * The same without group commit: a flush of an older snapshot must not
+	 * replace the file after a newer one.
+	 */
+	@Test
+	public void concurrentCloseTest() throws Exception {
+		dictFile.delete();
+		checkConcurrentClose(new ConcurrentDictionary(dictFile, false));
+	}
+
+	void checkConcurrentClose(final PersistentDictionary dict) throws Exception {
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < NUM_THREADS; ++t) {
+			final int id = t;
+			threads.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < 20; ++i) {
+						dict.put(id + "-" + i, "def " + i);
+						dict.close();
+						TreeMap<String, String> flushed = new TreeMap<String, String>();
+						DictionaryLoader.load(dictFile, flushed);
+						assertEquals("def " + i, flushed.get(id + "-" + i));
+					}
+				} catch (Throwable e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals("Flusher failed: " + errors, 0, errors.size());
+
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int t = 0; t < NUM_THREADS; ++t)
+			for (int i = 0; i < 20; ++i)
+				expected.put(t + "-" + i, "def " + i);
+		testEquality("Concurrent close after flush", expected, getDictionary(dictFile));
+		dictFile.delete();
+	}
+}
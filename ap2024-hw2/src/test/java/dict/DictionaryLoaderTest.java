@@ -0,0 +1,128 @@
+package dict;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class DictionaryLoaderTest {
+	public final static int NUM_LINES = 5000; // number of lines in the test file
+	public final static int CHUNK_SIZE = 1000; // small chunks, so lines cross chunk boundaries
+
+	Random rnd;
+	File dictFile;
+
+	@Before
+	public void setup() throws IOException {
+		rnd = new Random(23); // Fixed seed so tests will be repeatable.
+		dictFile = File.createTempFile("LoaderTest", ".tmp");
+		dictFile.deleteOnExit();
+	}
+
+	/**
+	 * Write lines to the dictionary file and read them back one by one, the
+	 * way InMemoryDictionary used to, to get the expected contents.
+	 */
+	Map<String, String> writeLines(String[] lines, String newLine) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(dictFile), StandardCharsets.UTF_8)) {
+			for (String line : lines)
+				writer.write(line + newLine);
+		}
+
+		Map<String, String> expected = new HashMap<String, String>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(dictFile), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split(":", 2);
+				if (parts.length == 2)
+					expected.put(parts[0], parts[1]);
+			}
+		}
+		return expected;
+	}
+
+	String[] randomLines(boolean sorted) {
+		TreeMap<String, String> words = new TreeMap<String, String>();
+		String[] lines = new String[NUM_LINES];
+		for (int i = 0; i < lines.length; ++i) {
+			String word = "w\u05d0" + rnd.nextInt(NUM_LINES / 2); // Some words repeat
+			String def = rnd.nextInt(10) == 0 ? "no colon here" : "def:" + rnd.nextLong();
+			words.put(word, def);
+			lines[i] = sorted ? null : word + ":" + def;
+		}
+		if (sorted)
+			lines = words.entrySet().stream().map(e -> e.getKey() + ":" + e.getValue()).toArray(String[]::new);
+		return lines;
+	}
+
+	@Test
+	public void unsortedChunksTest() throws IOException {
+		for (String newLine : new String[] { "\n", "\r\n", "\r" }) {
+			Map<String, String> expected = writeLines(randomLines(false), newLine);
+			TreeMap<String, String> actual = new TreeMap<String, String>();
+			DictionaryLoader.load(dictFile, actual, CHUNK_SIZE);
+			assertEquals("Chunked load differs from line by line load", expected, actual);
+		}
+	}
+
+	@Test
+	public void sortedChunksTest() throws IOException {
+		Map<String, String> expected = writeLines(randomLines(true), "\n");
+		TreeMap<String, String> actual = new TreeMap<String, String>();
+		DictionaryLoader.load(dictFile, actual, CHUNK_SIZE);
+		assertEquals("Chunked load differs from line by line load", expected, actual);
+		assertEquals(expected.size(), actual.size());
+	}
+
+	/**
+	 * Check that the sorted view of the chunks (which a TreeMap is built
+	 * from) has working submaps, including across empty chunks.
+	 */
+	@Test
+	public void sortedChunksViewTest() {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		List<DictionaryLoader.Chunk> chunks = new ArrayList<DictionaryLoader.Chunk>();
+		for (int i = 0; i < 10; ++i) {
+			DictionaryLoader.Chunk chunk = new DictionaryLoader.Chunk(0);
+			for (int j = 0; j < i % 3; ++j) { // every third chunk is empty
+				String word = "w" + (char) ('a' + i) + j;
+				chunk.add(word, "def " + word);
+				expected.put(word, "def " + word);
+			}
+			chunks.add(chunk);
+		}
+		SortedMap<String, String> view = new DictionaryLoader.SortedChunks(chunks);
+		assertEquals(expected, view);
+		assertEquals(expected.firstKey(), view.firstKey());
+		assertEquals(expected.lastKey(), view.lastKey());
+		assertEquals(expected.get("wb0"), view.get("wb0"));
+		for (String from : new String[] { "a", "wb0", "wb1", "wd", "z" }) {
+			assertEquals(expected.headMap(from), view.headMap(from));
+			assertEquals(expected.tailMap(from), view.tailMap(from));
+			if (from.compareTo("wh") <= 0) {
+				assertEquals(expected.subMap(from, "wh"), view.subMap(from, "wh"));
+				assertEquals(expected.tailMap(from).headMap("wh"), view.tailMap(from).headMap("wh"));
+			}
+		}
+		assertEquals(new TreeMap<String, String>(expected), new TreeMap<String, String>(view));
+	}
+
+	@Test
+	public void missingFileTest() throws IOException {
+		dictFile.delete();
+		TreeMap<String, String> actual = new TreeMap<String, String>();
+		DictionaryLoader.load(dictFile, actual, CHUNK_SIZE);
+		assertEquals(0, actual.size());
+	}
+}
@@ -0,0 +1,136 @@
+package dict;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentedDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new InstrumentedDictionary(new InMemoryDictionary(dictFile), dictFile);
+	}
+
+	/**
+	 * Check the counters, the listener and the JMX view, and that nothing is
+	 * recorded while the instrumentation is off.
+	 */
+	@Test
+	public void metricsTest() throws Exception {
+		dictFile.delete();
+		InstrumentedDictionary dict = (InstrumentedDictionary) getDictionary(dictFile);
+		DictionaryMetrics metrics = dict.getMetrics();
+		List<DictionaryMetrics.Operation> seen = new ArrayList<DictionaryMetrics.Operation>();
+		dict.setListener((operation, nanos) -> seen.add(operation));
+
+		fillMap(dict, testWords, testDefs);
+		for (String word : addWords)
+			dict.get(word);
+		dict.remove("First");
+		dict.close();
+		dict.open();
+
+		assertEquals(testWords.length, metrics.getPutCount());
+		assertEquals(addWords.length, metrics.getGetCount());
+		assertEquals(1, metrics.getRemoveCount());
+		assertEquals(1, metrics.getCloseCount());
+		assertEquals(1, metrics.getOpenCount());
+		assertEquals(2.0 / addWords.length, metrics.getHitRate(), 1e-9); // "Second" and "CAB"
+		assertEquals(testWords.length - 1, metrics.getEntryCount());
+		assertEquals(dictFile.length(), metrics.getBytesWritten());
+		assertEquals(dictFile.length(), metrics.getBytesRead());
+		assertEquals(testWords.length + addWords.length + 3, seen.size());
+		assertEquals(DictionaryMetrics.Operation.OPEN, seen.get(seen.size() - 1));
+		assertTrue(metrics.getLatency(DictionaryMetrics.Operation.CLOSE).getMax() > 0);
+
+		ObjectName name = metrics.register(dictFile.getName());
+		try {
+			assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CloseCount"));
+			assertEquals(dictFile.length(),
+					ManagementFactory.getPlatformMBeanServer().getAttribute(name, "BytesWritten"));
+		} finally {
+			DictionaryMetrics.unregister(name);
+		}
+
+		dict.setEnabled(false);
+		dict.get("First");
+		dict.close();
+		assertEquals(addWords.length, metrics.getGetCount());
+		assertEquals(1, metrics.getCloseCount());
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that only the files named after the dictionary (with a suffix
+	 * after a dot) count as its files.
+	 */
+	@Test
+	public void siblingFilesTest() throws Exception {
+		dictFile.delete();
+		File suffixed = new File(dictFile.getPath() + ".extra");
+		File unrelated = new File(dictFile.getPath() + "2");
+		InstrumentedDictionary dict = (InstrumentedDictionary) getDictionary(dictFile);
+		dict.put("word", "def");
+		Files.write(suffixed.toPath(), new byte[10]);
+		Files.write(unrelated.toPath(), new byte[100]);
+		dict.close();
+		assertEquals(dictFile.length() + 10, dict.getMetrics().getBytesWritten());
+
+		suffixed.delete();
+		unrelated.delete();
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that dictionaries sharing metrics add up their words, and that
+	 * a batch or clear() counts as a single operation, with its words
+	 * counted separately.
+	 */
+	@Test
+	public void sharedMetricsTest() throws Exception {
+		dictFile.delete();
+		File otherFile = new File(dictFile.getPath() + ".other");
+		otherFile.delete();
+		DictionaryMetrics metrics = new DictionaryMetrics();
+		InstrumentedDictionary dict = new InstrumentedDictionary(new InMemoryDictionary(dictFile), dictFile, metrics);
+		InstrumentedDictionary other = new InstrumentedDictionary(new InMemoryDictionary(otherFile), otherFile,
+				metrics);
+		List<DictionaryMetrics.Operation> seen = new ArrayList<DictionaryMetrics.Operation>();
+		dict.setListener((operation, nanos) -> seen.add(operation));
+
+		fillMap(dict, testWords, testDefs);
+		other.put("word", "def");
+		assertEquals(testWords.length + 1, metrics.getEntryCount());
+
+		dict.apply(new WriteBatch().put("new", "def").put("other", "def").remove("First"));
+		assertEquals(testWords.length + 1, metrics.getPutCount());
+		assertEquals(0, metrics.getRemoveCount());
+		assertEquals(1, metrics.getBatchCount());
+		assertEquals(2, metrics.getBatchPuts());
+		assertEquals(1, metrics.getBatchRemoves());
+		assertEquals(testWords.length + 2, metrics.getEntryCount());
+
+		dict.clear();
+		assertEquals(1, metrics.getClearCount());
+		assertEquals(testWords.length + 1, metrics.getClearedWords());
+		assertEquals(1, metrics.getEntryCount());
+		assertEquals(testWords.length + 2, seen.size()); // the puts, the batch and the clear
+		assertEquals(DictionaryMetrics.Operation.CLEAR, seen.get(seen.size() - 1));
+
+		// A closed dictionary doesn't count, until it's opened again
+		other.close();
+		assertEquals(0, metrics.getEntryCount());
+		other.open();
+		assertEquals(1, metrics.getEntryCount());
+		otherFile.delete();
+		dictFile.delete();
+	}
+}
@@ -0,0 +1,53 @@
+package dict;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+	/**
+	 * Every value falls in a bucket whose range contains it.
+	 */
+	@Test
+	public void bucketTest() {
+		Random rnd = new Random(5);
+		for (int i = 0; i < 100000; ++i) {
+			long value = rnd.nextLong() >>> (1 + rnd.nextInt(63)); // non-negative
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(value <= LatencyHistogram.highestValue(bucket));
+			assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+		}
+	}
+
+	/**
+	 * Percentiles are within the precision of the buckets.
+	 */
+	@Test
+	public void percentileTest() {
+		Random rnd = new Random(7);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[10000];
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = (long) Math.exp(rnd.nextDouble() * 20);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		for (double percentile : new double[] { 1, 50, 90, 99, 99.9, 100 }) {
+			long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+			long estimate = histogram.getValueAtPercentile(percentile);
+			assertTrue("p" + percentile + ": " + estimate + " vs " + exact,
+					estimate >= exact && estimate <= exact + exact / LatencyHistogram.SUB_BUCKETS + 1);
+		}
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+}
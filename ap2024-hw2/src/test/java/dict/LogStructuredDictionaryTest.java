@@ -0,0 +1,71 @@
+package dict;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogStructuredDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new LogStructuredDictionary(dictFile);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		LogStructuredDictionary.awaitCompaction(dictFile);
+		new File(dictFile.getPath() + LogStructuredDictionary.LOG_SUFFIX).delete();
+		new File(dictFile.getPath() + LogStructuredDictionary.COMPACTING_SUFFIX).delete();
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a flush only appends the changed words to the log, and that the
+	 * log is merged into the base file once it grows.
+	 */
+	@Test
+	public void appendAndCompactTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		File logFile = new File(dictFile.getPath() + LogStructuredDictionary.LOG_SUFFIX);
+
+		dictFile.delete();
+		PersistentDictionary dict = getDictionary(dictFile);
+		String[] words = randomStrings(MAX_SIZE, MAX_LEN);
+		String[] defs = randomStrings(MAX_SIZE, MAX_LEN);
+		fillMap(expected, words, defs);
+		fillMap(dict, words, defs);
+		dict.close();
+
+		long logSize = logFile.length();
+		dict = getDictionary(dictFile);
+		dict.put("changed", "once");
+		dict.close();
+		expected.put("changed", "once");
+		assertEquals("Flush should only append the changed word", logSize + "+changed:once\n.\n".length(),
+				logFile.length());
+
+		// Grow the log until it gets compacted
+		long written = 0;
+		for (int i = 0; written < 2 * LogStructuredDictionary.MIN_COMPACTION_SIZE; ++i) {
+			dict = getDictionary(dictFile);
+			String[] moreDefs = randomStrings(words.length, MAX_LEN * 10);
+			fillMap(expected, words, moreDefs);
+			fillMap(dict, words, moreDefs);
+			dict.close();
+			for (String def : moreDefs)
+				written += def.length();
+		}
+		LogStructuredDictionary.awaitCompaction(dictFile);
+		assertTrue("Log should have been compacted",
+				logFile.length() < LogStructuredDictionary.MIN_COMPACTION_SIZE);
+
+		dict = getDictionary(dictFile);
+		testEquality("Recall after compaction", expected, dict);
+		dict.close();
+	}
+}
@@ -0,0 +1,143 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new MappedDictionary(dictFile);
+	}
+
+	/**
+	 * Check that a text dictionary (as written by InMemoryDictionary) is
+	 * converted when it is opened.
+	 */
+	@Test
+	public void convertTextTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		fillMap(expected, testWords, testDefs);
+
+		try (Writer writer = new FileWriter(dictFile)) {
+			for (int i = testWords.length - 1; i >= 0; --i) // Out of order
+				writer.write(testWords[i] + ":" + testDefs[i] + "\n");
+		}
+		assertFalse(MappedDictionary.isMapped(dictFile));
+
+		PersistentDictionary dict = getDictionary(dictFile);
+		assertTrue("Text file wasn't converted", MappedDictionary.isMapped(dictFile));
+		testEquality("Recall after conversion", expected, dict);
+
+		dict.close();
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that the Bloom filter skips lookups of missing words, never hides
+	 * a word, and is rebuilt when the file changes behind its back.
+	 */
+	@Test
+	public void bloomFilterTest() throws Exception {
+		File bloomFile = new File(dictFile.getPath() + MappedDictionary.BLOOM_SUFFIX);
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int i = 0; i < 1000; ++i)
+			expected.put("word" + i, "def " + i);
+
+		dictFile.delete();
+		MappedDictionary dict = new MappedDictionary(dictFile, 0.01);
+		fillMap(dict, expected.keySet().toArray(new String[0]), expected.values().toArray(new String[0]));
+		dict.close();
+		assertTrue("Bloom filter wasn't saved", bloomFile.exists());
+
+		dict = new MappedDictionary(dictFile, 0.01);
+		testEquality("Recall with Bloom filter", expected, dict);
+		for (int i = 0; i < 1000; ++i)
+			assertNull(dict.get("missing" + i));
+		assertTrue("Bloom filter saved only " + dict.getSavedLookups() + " lookups",
+				dict.getSavedLookups() >= 900);
+
+		// Change the file without the filter, so the saved filter is out of date
+		PersistentDictionary plain = getDictionary(dictFile);
+		plain.put("added", "def");
+		expected.put("added", "def");
+		plain.close();
+		dict = new MappedDictionary(dictFile, 0.01);
+		testEquality("Recall with rebuilt Bloom filter", expected, dict);
+
+		dict.close();
+		dictFile.delete();
+		bloomFile.delete();
+	}
+
+	/**
+	 * Check that a Bloom filter is rebuilt when the file is rewritten with
+	 * other words of the same size, even with the same modification time.
+	 */
+	@Test
+	public void staleBloomFilterTest() throws Exception {
+		File bloomFile = new File(dictFile.getPath() + MappedDictionary.BLOOM_SUFFIX);
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int i = 0; i < 100; ++i)
+			expected.put("word" + i, "def " + i);
+
+		dictFile.delete();
+		MappedDictionary dict = new MappedDictionary(dictFile, 0.01);
+		fillMap(dict, expected.keySet().toArray(new String[0]), expected.values().toArray(new String[0]));
+		dict.close();
+		long length = dictFile.length();
+		long modified = dictFile.lastModified();
+
+		// Same number of words of the same lengths, written without the filter
+		expected.clear();
+		for (int i = 0; i < 100; ++i)
+			expected.put("wird" + i, "def " + i);
+		MappedDictionary.write(dictFile, expected.entrySet().iterator());
+		assertTrue(dictFile.setLastModified(modified));
+		assertEquals(length, dictFile.length());
+
+		dict = new MappedDictionary(dictFile, 0.01);
+		testEquality("Recall with rebuilt Bloom filter", expected, dict);
+
+		dict.close();
+		dictFile.delete();
+		bloomFile.delete();
+	}
+
+	/**
+	 * Check that only lookups count as lookups the Bloom filter saved, not
+	 * the changes.
+	 */
+	@Test
+	public void savedLookupsTest() throws Exception {
+		File bloomFile = new File(dictFile.getPath() + MappedDictionary.BLOOM_SUFFIX);
+		dictFile.delete();
+		MappedDictionary dict = new MappedDictionary(dictFile, 0.01);
+		for (int i = 0; i < 100; ++i)
+			dict.put("word" + i, "def " + i);
+		dict.close();
+
+		dict = new MappedDictionary(dictFile, 0.01);
+		for (int i = 0; i < 100; ++i) {
+			dict.put("added" + i, "def " + i);
+			assertNull(dict.remove("missing" + i));
+			assertEquals("def " + i, dict.remove("added" + i));
+		}
+		assertEquals(0, dict.getSavedLookups());
+		assertNull(dict.get("missing"));
+		assertEquals(1, dict.getSavedLookups());
+
+		dict.close();
+		dictFile.delete();
+		bloomFile.delete();
+	}
+}
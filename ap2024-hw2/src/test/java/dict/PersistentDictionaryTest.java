@@ -7,12 +7,14 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test a persistent dictionary.
@@ -482,4 +484,109 @@ public abstract class PersistentDictionaryTest {
 		testEquality("Multiple add/remove, open/close cycles", expected, dict);
 	}
 
+	/**
+	 * Collect the entries returned by a range query, checking that they are in order.
+	 */
+	TreeMap<String, String> collect(String msg, Iterator<Map.Entry<String, String>> entries) {
+		TreeMap<String, String> result = new TreeMap<String, String>();
+		String last = null;
+		while (entries.hasNext()) {
+			Map.Entry<String, String> entry = entries.next();
+			assertTrue(msg + ": Words out of order", last == null || last.compareTo(entry.getKey()) < 0);
+			last = entry.getKey();
+			result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Check range and prefix queries against a TreeMap, both before and after
+	 * the dictionary is flushed, with some words changed and removed in between.
+	 */
+	@Test
+	public void rangeTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		String[] words = randomStrings(MAX_SIZE, 4);
+		String[] defs = randomStrings(MAX_SIZE, MAX_LEN);
+		fillMap(expected, words, defs);
+
+		dictFile.delete();
+		PersistentDictionary dict = getDictionary(dictFile);
+		fillMap(dict, words, defs);
+		dict.close();
+		dict = getDictionary(dictFile);
+		for (int i = 0; i < words.length; i += 3) {
+			expected.remove(words[i]);
+			dict.remove(words[i]);
+		}
+		String[] addWords = randomStrings(MAX_SIZE / 4, 4);
+		String[] addDefs = randomStrings(MAX_SIZE / 4, MAX_LEN);
+		fillMap(expected, addWords, addDefs);
+		fillMap(dict, addWords, addDefs);
+
+		for (int pass = 0; pass < 2; ++pass) {
+			assertEquals("Full range", expected, collect("Full range", dict.range(null, null)));
+			for (int i = 0; i < NUM_EXTENDED; ++i) {
+				String[] bounds = randomStrings(2, 3);
+				String from = bounds[0].compareTo(bounds[1]) <= 0 ? bounds[0] : bounds[1];
+				String to = bounds[0].compareTo(bounds[1]) <= 0 ? bounds[1] : bounds[0];
+				assertEquals("Range " + from + " to " + to, expected.subMap(from, to),
+						collect("Range", dict.range(from, to)));
+				assertEquals("Range from " + from, expected.tailMap(from),
+						collect("Range", dict.range(from, null)));
+				assertEquals("Range to " + to, expected.headMap(to),
+						collect("Range", dict.range(null, to)));
+
+				String prefix = from.length() > 1 ? from.substring(0, 1) : from;
+				TreeMap<String, String> prefixed = new TreeMap<String, String>();
+				for (Map.Entry<String, String> entry : expected.entrySet())
+					if (entry.getKey().startsWith(prefix))
+						prefixed.put(entry.getKey(), entry.getValue());
+				assertEquals("Prefix " + prefix, prefixed, collect("Prefix", dict.prefixScan(prefix)));
+			}
+			dict.close();
+			dict = getDictionary(dictFile);
+		}
+		dict.close();
+		dictFile.delete();
+	}
+
+	/**
+	 * Apply batches of changes, both to an empty dictionary and to one with
+	 * words in it, and check them against the same changes made to a TreeMap.
+	 */
+	@Test
+	public void batchTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		dictFile.delete();
+		PersistentDictionary dict = getDictionary(dictFile);
+
+		for (int i = 0; i < 3; ++i) {
+			WriteBatch batch = new WriteBatch();
+			String[] words = randomStrings(MAX_SIZE, 4);
+			String[] defs = randomStrings(MAX_SIZE, MAX_LEN);
+			for (int j = 0; j < words.length; ++j) {
+				if (i > 0 && rnd.nextDouble() < 0.3) {
+					batch.remove(words[j]);
+					expected.remove(words[j]);
+				} else {
+					batch.put(words[j], defs[j]);
+					expected.put(words[j], defs[j]);
+				}
+			}
+			dict.apply(batch);
+			testEquality("Batch " + i, expected, dict);
+			dict.close();
+			dict = getDictionary(dictFile);
+			testEquality("Persistent batch " + i, expected, dict);
+		}
+
+		TreeMap<String, String> more = new TreeMap<String, String>();
+		fillMap(more, addWords, addDefs);
+		dict.putAll(more);
+		expected.putAll(more);
+		testEquality("Put all", expected, dict);
+		dict.close();
+		dictFile.delete();
+	}
 }
@@ -0,0 +1,134 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadingDictionaryTest extends PersistentDictionaryTest {
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new ReloadingDictionary(dictFile);
+	}
+
+	void append(String text) throws IOException {
+		try (Writer writer = new FileWriter(dictFile, true)) {
+			writer.write(text);
+		}
+	}
+
+	/**
+	 * Check that lines appended by someone else are read incrementally, and
+	 * that a rewritten file is read again in full.
+	 */
+	@Test
+	public void reloadTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		fillMap(expected, testWords, testDefs);
+
+		dictFile.delete();
+		PersistentDictionary writer = new InMemoryDictionary(dictFile);
+		fillMap(writer, testWords, testDefs);
+		writer.close();
+
+		ReloadingDictionary dict = new ReloadingDictionary(dictFile);
+		testEquality("Initial load", expected, dict);
+		assertFalse("Reloaded an unchanged file", dict.reload());
+
+		append("appended:def\nFirst:new def\npartial:d");
+		expected.put("appended", "def");
+		expected.put("First", "new def");
+		assertTrue(dict.reload());
+		assertEquals(1, dict.getIncrementalReloads());
+		testEquality("Incremental reload", expected, dict);
+
+		append("ef\n"); // the rest of the partial line
+		expected.put("partial", "def");
+		dict.open();
+		assertEquals(2, dict.getIncrementalReloads());
+		testEquality("Incremental open", expected, dict);
+
+		writer.remove("Second"); // rewrite the file without some of the words
+		writer.close();
+		expected.clear();
+		fillMap(expected, testWords, testDefs);
+		expected.remove("Second");
+		long fullReloads = dict.getFullReloads();
+		assertTrue(dict.reload());
+		assertEquals(fullReloads + 1, dict.getFullReloads());
+		testEquality("Full reload", expected, dict);
+
+		dict.put("local", "change");
+		dict.open(); // undo the change
+		testEquality("Undo local change", expected, dict);
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a full load reads a last line without a line break, and
+	 * reads it again once the rest of it is appended.
+	 */
+	@Test
+	public void partialLineTest() throws Exception {
+		dictFile.delete();
+		append("word:def\npartial:d");
+		ReloadingDictionary dict = new ReloadingDictionary(dictFile);
+		assertEquals(2, dict.size());
+		assertEquals("d", dict.get("partial"));
+
+		append("ef\n");
+		assertTrue(dict.reload());
+		assertEquals(1, dict.getIncrementalReloads());
+		assertEquals("def", dict.get("partial"));
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a file whose last line has no line break after it keeps
+	 * that line when it is rewritten.
+	 */
+	@Test
+	public void noTrailingNewlineTest() throws Exception {
+		dictFile.delete();
+		append("a:1\nb:2");
+		ReloadingDictionary dict = new ReloadingDictionary(dictFile);
+		dict.put("c", "3");
+		dict.close();
+
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		expected.put("a", "1");
+		expected.put("b", "2");
+		expected.put("c", "3");
+		testEquality("Recall after rewrite", expected, new ReloadingDictionary(dictFile));
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a watched dictionary notices appended lines.
+	 */
+	@Test
+	public void watchTest() throws Exception {
+		dictFile.delete();
+		ReloadingDictionary dict = new ReloadingDictionary(dictFile);
+		dict.put("word", "def");
+		dict.close();
+		dict.watch();
+		try {
+			append("watched:def\n");
+			for (int i = 0; i < 200 && !dict.containsKey("watched"); ++i)
+				Thread.sleep(50);
+			assertEquals("def", dict.get("watched"));
+			assertEquals(2, dict.size());
+		} finally {
+			dict.stopWatching();
+		}
+		dictFile.delete();
+	}
+}
@@ -0,0 +1,77 @@
+package dict;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedDictionaryTest extends PersistentDictionaryTest {
+	public final static int NUM_SHARDS = 4;
+
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new ShardedDictionary(dictFile, NUM_SHARDS);
+	}
+
+	@After
+	public void cleanup() {
+		for (int i = 0; i < NUM_SHARDS; ++i)
+			new File(dictFile.getPath() + ShardedDictionary.SHARD_SUFFIX + i).delete();
+	}
+
+	Object fileKey(int shard) throws IOException {
+		File file = new File(dictFile.getPath() + ShardedDictionary.SHARD_SUFFIX + shard);
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+	}
+
+	/**
+	 * Check that a text dictionary is split into shards, and that a flush only
+	 * rewrites the shards that changed.
+	 */
+	@Test
+	public void shardTest() throws Exception {
+		TreeMap<String, String> expected = new TreeMap<String, String>();
+		for (int i = 0; i < 1000; ++i)
+			expected.put("word" + i, "def " + i);
+		try (Writer writer = new FileWriter(dictFile)) {
+			for (String word : expected.keySet())
+				writer.write(word + ":" + expected.get(word) + "\n");
+		}
+		assertFalse(ShardedDictionary.isManifest(dictFile));
+
+		PersistentDictionary dict = getDictionary(dictFile);
+		testEquality("Recall from text", expected, dict);
+		dict.close();
+		assertTrue("Manifest wasn't written", ShardedDictionary.isManifest(dictFile));
+		assertEquals(NUM_SHARDS, new ShardedDictionary(dictFile, NUM_SHARDS + 1).getNumShards());
+
+		Object[] keys = new Object[NUM_SHARDS];
+		for (int i = 0; i < NUM_SHARDS; ++i)
+			keys[i] = fileKey(i);
+		dict = getDictionary(dictFile);
+		dict.put("word0", "changed");
+		expected.put("word0", "changed");
+		dict.close();
+		int rewritten = 0;
+		for (int i = 0; i < NUM_SHARDS; ++i)
+			if (!keys[i].equals(fileKey(i)))
+				rewritten++;
+		assertEquals("Shards rewritten", 1, rewritten);
+
+		dict = getDictionary(dictFile);
+		testEquality("Recall from shards", expected, dict);
+		assertFalse(collect("Range", dict.range("word1", "word2")).isEmpty());
+		assertEquals(expected.subMap("word1", "word2"), collect("Range", dict.range("word1", "word2")));
+		dictFile.delete();
+	}
+}
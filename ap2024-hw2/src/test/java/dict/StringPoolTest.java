@@ -0,0 +1,61 @@
+package dict;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StringPoolTest extends PersistentDictionaryTest {
+	StringPool pool = new StringPool();
+
+	@Override
+	PersistentDictionary getDictionary(File file) throws IOException {
+		return new InMemoryDictionary(dictFile, pool);
+	}
+
+	/**
+	 * Check that equal definitions are loaded once, and that dictionaries
+	 * sharing a pool share their definitions (but not their words).
+	 */
+	@Test
+	public void dedupTest() throws IOException {
+		try (Writer writer = new FileWriter(dictFile)) {
+			for (int i = 0; i < 10000; ++i)
+				writer.write("word" + i + ":definition " + (i % 10) + "\n");
+		}
+		PersistentDictionary first = getDictionary(dictFile);
+		PersistentDictionary second = getDictionary(dictFile);
+		assertEquals(10000, first.size());
+		for (int i = 0; i < 10000; ++i) {
+			assertEquals("definition " + (i % 10), first.get("word" + i));
+			assertSame("Definition wasn't shared", first.get("word" + (i % 10)), first.get("word" + i));
+			assertSame("Definition wasn't shared", first.get("word" + i), second.get("word" + i));
+		}
+
+		assertEquals(10, pool.size());
+		assertEquals(2 * 10000 - 10, pool.getDuplicates());
+		assertTrue(pool.getBytesSaved() >= 40 * pool.getDuplicates());
+		dictFile.delete();
+	}
+
+	/**
+	 * Check that a pool doesn't keep more strings than it was given room
+	 * for, and still shares the strings it kept.
+	 */
+	@Test
+	public void boundedTest() {
+		StringPool bounded = new StringPool(1000);
+		for (int i = 0; i < 100000; ++i)
+			bounded.intern("string " + i);
+		assertTrue("Pool grew to " + bounded.size(), bounded.size() <= 1000);
+
+		String kept = bounded.intern("kept");
+		assertSame(kept, bounded.intern(new String("kept")));
+	}
+}
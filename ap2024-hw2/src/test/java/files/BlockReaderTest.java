@@ -0,0 +1,92 @@
+package files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BlockReaderTest {
+    Random rnd;
+
+    @Before
+    public void setup() {
+        rnd = new Random(9); // Fixed seed so tests will be repeatable.
+    }
+
+    @Test
+    public void testIndexOf() {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) (i * 7 + 128);
+        for (int from = 0; from < 20; ++from)
+            for (int i = from; i < bytes.length; ++i)
+                assertEquals(i, ByteScan.indexOf(bytes, from, bytes.length, bytes[i]));
+        assertEquals(-1, ByteScan.indexOf(bytes, 0, 50, bytes[50]));
+    }
+
+    /**
+     * Compare to Streams.getQuoted on every quoted part of random streams, with
+     * buffers smaller than the quoted parts.
+     */
+    @Test
+    public void testGetQuoted() throws IOException {
+        for (int i = 0; i < 100; ++i) {
+            byte[] arr = new byte[rnd.nextInt(1000)];
+            rnd.nextBytes(arr);
+            for (int j = 0; j < arr.length; ++j)
+                if (arr[j] == '"' || rnd.nextInt(50) == 0)
+                    arr[j] = rnd.nextBoolean() ? (byte) '"' : 0;
+
+            ByteArrayInputStream expectedIn = new ByteArrayInputStream(arr);
+            ByteBlockReader reader = new ByteBlockReader(new ByteArrayInputStream(arr), 1 + rnd.nextInt(16));
+            while (true) {
+                List<Byte> expected = Streams.getQuoted(expectedIn);
+                ByteBuffer actual = reader.getQuoted();
+                if (expected == null) {
+                    assertNull(actual);
+                    break;
+                }
+                byte[] expectedBytes = new byte[expected.size()];
+                for (int j = 0; j < expectedBytes.length; ++j)
+                    expectedBytes[j] = expected.get(j);
+                assertArrayEquals(expectedBytes,
+                        Arrays.copyOfRange(actual.array(), actual.position(), actual.limit()));
+            }
+        }
+    }
+
+    /**
+     * Split random strings on end marks that overlap themselves, with buffers
+     * smaller than the parts.
+     */
+    @Test
+    public void testReadUntil() throws IOException {
+        String[] endMarks = {"a", "ab", "aab", "abab", "aaaa"};
+        for (int i = 0; i < 100; ++i) {
+            StringBuilder text = new StringBuilder();
+            for (int j = rnd.nextInt(500); j > 0; --j)
+                text.append((char) ('a' + rnd.nextInt(3)));
+            String endMark = endMarks[rnd.nextInt(endMarks.length)];
+
+            CharBlockReader reader = new CharBlockReader(new StringReader(text.toString()), 1 + rnd.nextInt(16));
+            int start = 0;
+            while (!reader.atEnd()) {
+                int end = text.indexOf(endMark, start);
+                String expected = text.substring(start, end < 0 ? text.length() : end);
+                assertEquals(expected, reader.readUntil(endMark).toString());
+                start = end < 0 ? text.length() : end + endMark.length();
+            }
+            assertEquals(text.length(), start);
+        }
+    }
+}
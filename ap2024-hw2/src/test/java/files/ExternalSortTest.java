@@ -0,0 +1,131 @@
+package files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ExternalSortTest {
+    Random rnd;
+    File temp;
+
+    @Before
+    public void setup() throws IOException {
+        rnd = new Random(7); // Fixed seed so tests will be repeatable.
+        temp = File.createTempFile("externalSort", "byt");
+    }
+
+    @After
+    public void cleanup() {
+        temp.delete();
+    }
+
+    /**
+     * @return the records of bytes sorted as unsigned numbers, followed by the
+     * bytes after the last whole record.
+     */
+    static byte[] sorted(byte[] bytes, int recordSize) {
+        int count = bytes.length / recordSize;
+        byte[][] records = new byte[count][];
+        for (int i = 0; i < count; ++i)
+            records[i] = Arrays.copyOfRange(bytes, i * recordSize, (i + 1) * recordSize);
+        Arrays.sort(records, Arrays::compareUnsigned);
+        byte[] result = bytes.clone();
+        for (int i = 0; i < count; ++i)
+            System.arraycopy(records[i], 0, result, i * recordSize, recordSize);
+        return result;
+    }
+
+    void checkSort(int recordSize, int memory, int length, ExternalSort.Mode mode) throws IOException {
+        byte[] bytes = new byte[length];
+        rnd.nextBytes(bytes);
+        for (int i = 0; i < length / 4; ++i) // some equal records
+            bytes[rnd.nextInt(length)] = 0;
+        checkSort(recordSize, memory, bytes, mode);
+    }
+
+    void checkSort(int recordSize, int memory, byte[] bytes, ExternalSort.Mode mode) throws IOException {
+        checkSort(recordSize, memory, bytes, new ExternalSort(recordSize, memory, mode));
+    }
+
+    void checkSort(int recordSize, int memory, byte[] bytes, ExternalSort sort) throws IOException {
+        int length = bytes.length;
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            file.setLength(0);
+            file.write(bytes);
+            sort.sort(file);
+
+            byte[] actual = new byte[length];
+            file.seek(0);
+            file.readFully(actual);
+            assertArrayEquals("Failed with records of " + recordSize + " bytes, " + memory + " bytes of memory and "
+                    + length + " bytes", sorted(bytes, recordSize), actual);
+        }
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        for (int recordSize : new int[]{1, 3, 7, 8, 13})
+            for (ExternalSort.Mode mode : ExternalSort.Mode.values())
+                checkSort(recordSize, 1 << 16, 1000 * recordSize + rnd.nextInt(recordSize), mode);
+    }
+
+    /**
+     * Small budgets make many runs, and several merge passes with few runs
+     * each (ending in the file or in the temporary file).
+     */
+    @Test
+    public void testMerge() throws IOException {
+        for (int recordSize : new int[]{1, 3, 7, 8, 13})
+            for (int memory : new int[]{3 * (recordSize + 8), 100, 1000, 3 * ExternalSort.MIN_BUFFER})
+                checkSort(recordSize, memory, 5000 * recordSize + rnd.nextInt(recordSize), ExternalSort.Mode.MERGE);
+    }
+
+    /**
+     * Windows sorted and groups merged on several threads (more windows than
+     * threads, and a single window sorted on all of them).
+     */
+    @Test
+    public void testParallel() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int recordSize : new int[]{1, 3, 13})
+                for (int memory : new int[]{1000, 3 * ExternalSort.MIN_BUFFER, 1 << 20}) {
+                    byte[] bytes = new byte[20000 * recordSize + rnd.nextInt(recordSize)];
+                    rnd.nextBytes(bytes);
+                    checkSort(recordSize, memory, bytes, new ExternalSort(recordSize, memory,
+                            ExternalSort.Mode.PARALLEL, pool));
+                }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Budgets with small buckets, and records with bytes that are the same
+     * in all of them (whose passes are skipped, so the records end up in
+     * either file).
+     */
+    @Test
+    public void testRadix() throws IOException {
+        for (int recordSize : new int[]{1, 3, 8})
+            for (int memory : new int[]{257 * recordSize, 1000 * recordSize, 3 * ExternalSort.MIN_BUFFER})
+                checkSort(recordSize, memory, 5000 * recordSize + rnd.nextInt(recordSize), ExternalSort.Mode.RADIX);
+
+        for (int constant = 0; constant < 3; ++constant) {
+            byte[] bytes = new byte[3 * 5000];
+            rnd.nextBytes(bytes);
+            for (int i = constant; i < bytes.length; i += 3)
+                bytes[i] = 42;
+            checkSort(3, 1000, bytes, ExternalSort.Mode.RADIX);
+        }
+    }
+}
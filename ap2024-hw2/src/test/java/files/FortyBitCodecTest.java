@@ -0,0 +1,94 @@
+package files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FortyBitCodecTest {
+    Random rnd;
+
+    @Before
+    public void setup() {
+        rnd = new Random(9); // Fixed seed so tests will be repeatable.
+    }
+
+    long[] randomNumbers(int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; ++i)
+            values[i] = rnd.nextLong() >>> (24 + rnd.nextInt(40));
+        values[0] = FortyBitCodec.MAX_VALUE;
+        return values;
+    }
+
+    /**
+     * Numbers written in bulk read the same with Streams.readNumber, and with
+     * every bulk reader (including a few extra bytes at the end).
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        long[] values = randomNumbers(20000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FortyBitCodec.write(out, values, 0, values.length);
+        out.write(new byte[]{1, 2, 3});
+        byte[] bytes = out.toByteArray();
+        assertEquals(values.length * 5 + 3, bytes.length);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        for (long value : values)
+            assertEquals(value, Streams.readNumber(in));
+        assertEquals(-1, Streams.readNumber(in));
+
+        assertArrayEquals(values, FortyBitCodec.readAll(new ByteArrayInputStream(bytes)));
+        assertArrayEquals(values, FortyBitCodec.stream(new ByteArrayInputStream(bytes)).toArray());
+
+        File file = File.createTempFile("numbers", ".bin");
+        try {
+            Files.write(file.toPath(), bytes);
+            assertArrayEquals(values, FortyBitCodec.readAll(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Decoding and encoding at every offset near the end of an array.
+     */
+    @Test
+    public void testArrayEnds() {
+        long[] values = randomNumbers(10);
+        for (int offset = 0; offset < 8; ++offset) {
+            byte[] bytes = new byte[offset + values.length * 5];
+            FortyBitCodec.encode(values, 0, values.length, bytes, offset);
+            long[] decoded = new long[values.length];
+            FortyBitCodec.decode(bytes, offset, decoded, 0, values.length);
+            assertArrayEquals(values, decoded);
+            for (int i = 0; i < values.length; ++i)
+                assertEquals(values[i], FortyBitCodec.decode(bytes, offset + i * 5));
+        }
+        for (int count = 0; count <= values.length; ++count) { // the bytes after the numbers are left alone
+            byte[] bytes = new byte[3 + values.length * 5 + 8];
+            Arrays.fill(bytes, (byte) 0x77);
+            FortyBitCodec.encode(values, 0, count, bytes, 3);
+            for (int j = 0; j < bytes.length; ++j)
+                if (j < 3 || j >= 3 + count * 5)
+                    assertEquals("Byte " + j + " changed encoding " + count + " numbers", 0x77, bytes[j]);
+        }
+        try {
+            FortyBitCodec.encode(new long[]{1L << 40}, 0, 1, new byte[5], 0);
+            fail("Number too large was encoded");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.RandomAccessFile;
 import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 public class RandomAccessTest {
 	public final static int NUM_EXTENDED = 32; // number of extended tests
@@ -75,6 +76,38 @@ public class RandomAccessTest {
 		}
 	}
 
+	/**
+	 * A file several blocks long, where the runs of values cross blocks.
+	 */
+	@Test
+	public void testSortBytesLarge() throws IOException {
+		File temp = File.createTempFile("sortBytes", "byt");
+		RandomAccessFile file = new RandomAccessFile(temp, "rw");
+
+		byte[] origBytes = new byte[3 * RandomAccess.BLOCK_SIZE + 17];
+		rnd.nextBytes(origBytes);
+		for (int j = 0; j < RandomAccess.BLOCK_SIZE; ++j)
+			origBytes[rnd.nextInt(origBytes.length)] = 42;
+		file.write(origBytes);
+		RandomAccess.sortBytes(file);
+
+		int counts[] = new int[256];
+		for (byte b : origBytes)
+			++counts[b & 0xff];
+		byte sortedBytes[] = new byte[origBytes.length];
+		for (int value = 0, j = 0; value < 256; ++value)
+			for (int k = 0; k < counts[value]; ++k)
+				sortedBytes[j++] = (byte) value;
+
+		file.seek(0);
+		byte[] actualBytes = new byte[origBytes.length];
+		file.readFully(actualBytes);
+		assertArrayEquals(sortedBytes, actualBytes);
+		assertEquals(origBytes.length, file.length());
+		file.close();
+		temp.delete();
+	}
+
 	@Test
 	public void testSortTriBytes() throws IOException {
 		File temp = File.createTempFile("sortTriBytes", "byt");
@@ -0,0 +1,71 @@
+package files;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamMatcherTest {
+    Random rnd;
+
+    @Before
+    public void setup() {
+        rnd = new Random(9); // Fixed seed so tests will be repeatable.
+    }
+
+    /**
+     * @return the pattern that a naive search finds ending at index end (the
+     * longest one), or -1.
+     */
+    static int naiveMatch(String text, int end, String[] patterns) {
+        int best = -1;
+        for (int p = 0; p < patterns.length; ++p)
+            if (text.startsWith(patterns[p], end + 1 - patterns[p].length())
+                    && (best < 0 || patterns[p].length() > patterns[best].length()))
+                best = p;
+        return best;
+    }
+
+    /**
+     * Compare to a naive search on random text over a small alphabet, where
+     * patterns overlap themselves and each other a lot.
+     */
+    @Test
+    public void testMatches() {
+        for (int i = 0; i < 200; ++i) {
+            String[] patterns = new String[1 + rnd.nextInt(4)];
+            for (int p = 0; p < patterns.length; ++p)
+                patterns[p] = randomString(1 + rnd.nextInt(5), i % 2 == 0 ? 'a' : '\u05d0');
+            String text = randomString(300, i % 2 == 0 ? 'a' : '\u05d0');
+
+            StreamMatcher matcher = new StreamMatcher(patterns);
+            for (int j = 0; j < text.length(); ++j)
+                assertEquals("Failed at " + j + " of " + text, naiveMatch(text, j, patterns),
+                        matcher.next(text.charAt(j)));
+        }
+    }
+
+    String randomString(int length, char first) {
+        StringBuilder builder = new StringBuilder();
+        for (int j = 0; j < length; ++j)
+            builder.append((char) (first + rnd.nextInt(3)));
+        return builder.toString();
+    }
+
+    @Test
+    public void testReadUntilAny() throws IOException {
+        StreamMatcher lines = new StreamMatcher("\n", "\r\n", "<end>");
+        CharBlockReader reader = new CharBlockReader(new StringReader("one\r\ntwo\nthree<end>four"), 4);
+        String[] expected = {"one", "two", "three", "four"};
+        int[] expectedMatches = {1, 0, 2, -1};
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], reader.readUntil(lines).toString());
+            assertEquals(expectedMatches[i], reader.getLastMatch());
+        }
+        assertEquals(true, reader.atEnd());
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -119,6 +120,13 @@ public class StreamsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testReadUntilOverlap() throws IOException {
+        StringReader in = new StringReader("aaab|aab");
+        assertEquals("a", Streams.readUntil(in, "aab"));
+        assertEquals("|", Streams.readUntil(in, "aab"));
+    }
+
     @Test
     public void testReadUntilExtended() throws IOException {
         for (int i = 0; i < NUM_EXTENDED; ++i) {
@@ -157,6 +165,33 @@ public class StreamsTest {
         assertArrayEquals(expectedBytes, actualBytes);
     }
 
+    /**
+     * Compare the channel version to the stream version, on inputs larger
+     * than its buffer, with one bad byte and with several.
+     */
+    @Test
+    public void testFilterOutChannel() throws IOException {
+        byte[] bytes = new byte[1 << 20];
+        rnd.nextBytes(bytes);
+        for (int j = 0; j < bytes.length; j += rnd.nextInt(8))
+            bytes[j] = (byte) (j % 3);
+
+        byte[][] badBytesArr = {{}, {0}, {(byte) 200}, {0, 1, (byte) 255}};
+        for (byte[] badBytes : badBytesArr) {
+            byte[] expected = bytes;
+            for (byte badByte : badBytes) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Streams.filterOut(new ByteArrayInputStream(expected), out, badByte);
+                expected = out.toByteArray();
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Streams.filterOut(Channels.newChannel(new ByteArrayInputStream(bytes)), Channels.newChannel(out),
+                    badBytes);
+            assertArrayEquals("Failed with " + badBytes.length + " bad bytes", expected, out.toByteArray());
+        }
+    }
+
     /*
      * Copy bytes from input to output, ignoring all occurrences of badByte.
      *
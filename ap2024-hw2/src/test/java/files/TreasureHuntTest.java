@@ -126,6 +126,35 @@ public class TreasureHuntTest {
 
 
 
+    /**
+     * Clues at every bit offset around page boundaries and the end of a map
+     * of several pages, and clues read again come from the cache.
+     */
+    @Test
+    public void testCachedMap() throws IOException {
+        byte[] bytes = new byte[3 * TreasureHunt.PAGE_SIZE + 5];
+        rand.nextBytes(bytes);
+        map.write(ByteBuffer.wrap(bytes), 0);
+
+        TreasureHunt.CachedMap cachedMap = new TreasureHunt.CachedMap(map);
+        for (int page = 1; page <= 4; ++page) {
+            long boundary = page * TreasureHunt.PAGE_SIZE * 8L;
+            for (long location = boundary - 64; location < boundary + 8; ++location) {
+                long expected = 0;
+                for (long bit = location; bit < location + 48; ++bit) {
+                    int b = (int) (bit >>> 3);
+                    int value = b < bytes.length ? (bytes[b] >>> (7 - (bit & 7))) & 1 : 0;
+                    expected = expected << 1 | value;
+                }
+                assertEquals("Wrong clue at " + location, expected, cachedMap.readClue(location));
+            }
+        }
+        long reads = cachedMap.reads;
+        assertEquals(4, reads);
+        cachedMap.readClue(12345);
+        assertEquals(reads, cachedMap.reads);
+    }
+
     @Test
     public void testFindTreasureExtended() throws IOException {
         TreasureMapDecoder decoder = (clue, idx, size) -> {